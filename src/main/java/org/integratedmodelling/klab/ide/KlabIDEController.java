@@ -14,6 +14,7 @@ import javafx.scene.paint.Color;
 import javafx.stage.StageStyle;
 import javafx.util.Duration;
 import org.integratedmodelling.common.logging.Logging;
+import org.integratedmodelling.klab.api.configuration.Configuration;
 import org.integratedmodelling.klab.api.digitaltwin.DigitalTwin;
 import org.integratedmodelling.klab.api.engine.Engine;
 import org.integratedmodelling.klab.api.engine.distribution.Distribution;
@@ -36,7 +37,11 @@ import org.integratedmodelling.klab.api.view.modeler.views.controllers.RuntimeVi
 import org.integratedmodelling.klab.api.view.modeler.views.controllers.ServicesViewController;
 import org.integratedmodelling.klab.ide.api.DigitalTwinViewer;
 import org.integratedmodelling.klab.ide.components.*;
+import org.integratedmodelling.klab.ide.model.ContextIndex;
 import org.integratedmodelling.klab.ide.model.DigitalTwinPeer;
+import org.integratedmodelling.klab.ide.model.LayoutStore;
+import org.integratedmodelling.klab.ide.model.ServiceInfoCache;
+import org.integratedmodelling.klab.ide.model.ServiceStatusSnapshot;
 import org.integratedmodelling.klab.ide.pages.BrowsablePage;
 import org.integratedmodelling.klab.ide.settings.IDESettings;
 import org.integratedmodelling.klab.ide.utils.NodeUtils;
@@ -52,7 +57,14 @@ public class KlabIDEController implements UIView, ServicesView, RuntimeView {
   private static Modeler modeler;
   private View currentView;
   private UserScope user;
-  private Map<KlabService.Type, KlabService.ServiceCapabilities> capabilities = new HashMap<>();
+  private final ServiceInfoCache serviceInfo = new ServiceInfoCache();
+  private final ContextIndex contextIndex = new ContextIndex();
+  private static final List<KlabService.Type> SERVICE_TYPES =
+      List.of(
+          KlabService.Type.RESOURCES,
+          KlabService.Type.REASONER,
+          KlabService.Type.RUNTIME,
+          KlabService.Type.RESOLVER);
   private boolean inspectorIsOn;
   private Set<View> neverSeen = EnumSet.of(View.RESOURCES, View.WORKSPACES, View.DIGITAL_TWINS);
   private static KlabIDEController _this;
@@ -92,6 +104,7 @@ public class KlabIDEController implements UIView, ServicesView, RuntimeView {
   private RuntimeViewController runtimeController;
   private Distribution distribution;
   private IDESettings settings;
+  private LayoutStore layoutStore;
   private Map<View, Button> viewButtons = new HashMap<>();
   private AtomicBoolean engineStarted = new AtomicBoolean(false);
   private AtomicBoolean engineTransitioning = new AtomicBoolean(false);
@@ -124,6 +137,24 @@ public class KlabIDEController implements UIView, ServicesView, RuntimeView {
     digitalTwinPeerMap.remove(id);
   }
 
+  public IDESettings getSettings() {
+    return settings;
+  }
+
+  public LayoutStore getLayoutStore() {
+    return layoutStore;
+  }
+
+  /** Cached service capabilities and status, shared by all views. */
+  public ServiceInfoCache getServiceInfo() {
+    return serviceInfo;
+  }
+
+  /** The digital twins known on each runtime service. */
+  public ContextIndex getContextIndex() {
+    return contextIndex;
+  }
+
   public static KlabIDEController instance() {
     return _this;
   }
@@ -137,6 +168,7 @@ public class KlabIDEController implements UIView, ServicesView, RuntimeView {
     modeler = new ModelerImpl(this);
 
     this.settings = new IDESettings();
+    this.layoutStore = new LayoutStore(Configuration.INSTANCE.getFile("modeler.layouts"));
 
     this.servicesController = modeler.viewController(ServicesViewController.class);
     this.runtimeController = modeler.viewController(RuntimeViewController.class);
@@ -404,32 +436,25 @@ public class KlabIDEController implements UIView, ServicesView, RuntimeView {
    *
    * @param user
    */
-  private void checkServices(UserScope user, Engine.Status status) {
+  private void checkServices(UserScope user, ServiceStatusSnapshot services) {
 
-    int nLocalServices = 0;
-
-    for (var serviceType :
-        List.of(
-            KlabService.Type.RESOURCES,
-            KlabService.Type.REASONER,
-            KlabService.Type.RUNTIME,
-            KlabService.Type.RESOLVER)) {
+    for (var serviceType : SERVICE_TYPES) {
 
       String serviceName = serviceType.name().toLowerCase();
       Ikon icon = Theme.LOCAL_SERVICE_ICON;
-      var service = user.getService(serviceType.classify());
+      var serviceStatus = services.get(serviceType);
+      var service = serviceStatus.primary();
       String tooltip = Utils.Strings.capitalize(serviceName) + " ";
 
       if (service != null)
         if (!Utils.URLs.isLocalHost(service.getUrl())) {
           tooltip = "Remote " + serviceName + " " + service.getServiceName();
           icon =
-              user.getServices(serviceType.classify()).size() > 1
+              serviceStatus.total() > 1
                   ? Theme.REMOTE_SERVICE_ICON_MANY
                   : Theme.REMOTE_SERVICE_ICON_ONE;
         } else {
           tooltip = "Local " + serviceName;
-          nLocalServices++;
         }
 
       var button =
@@ -444,114 +469,91 @@ public class KlabIDEController implements UIView, ServicesView, RuntimeView {
       var color =
           switch (serviceType) {
             case REASONER ->
-                service.status().isOperational()
+                serviceStatus.primaryOperational()
                     ? Theme.REASONER_COLOR_ACTIVE
                     : Theme.REASONER_COLOR_MUTED;
             case RESOURCES ->
-                service.status().isOperational()
+                serviceStatus.primaryOperational()
                     ? Theme.RESOURCES_COLOR_ACTIVE
                     : Theme.RESOURCES_COLOR_MUTED;
             case RESOLVER ->
-                service.status().isOperational()
+                serviceStatus.primaryOperational()
                     ? Theme.RESOLVER_COLOR_ACTIVE
                     : Theme.RESOLVER_COLOR_MUTED;
             case RUNTIME ->
-                service.status().isOperational()
+                serviceStatus.primaryOperational()
                     ? Theme.RUNTIME_COLOR_ACTIVE
                     : Theme.RUNTIME_COLOR_MUTED;
             default -> throw new KlabInternalErrorException("?"); // can't happen
           };
 
-      if (serviceType == KlabService.Type.RESOURCES
-          && user.getServices(ResourcesService.class).stream()
-              .anyMatch(s -> s.status().isOperational())) {
-        setButton(
-            workspacesButton,
-            Theme.RESOURCES_ICON,
-            24,
-            Color.DARKGREEN,
-            workspacesButton.getTooltip().getText());
-        setButton(
-            resourcesManagerButton,
-            Theme.RESOURCES_ICON,
-            24,
-            Color.DARKGREEN,
-            resourcesManagerButton.getTooltip().getText());
-      } else {
-        setButton(
-            workspacesButton,
-            Theme.WORKSPACES_ICON,
-            24,
-            Color.GREY,
-            workspacesButton.getTooltip().getText());
-        setButton(
-            resourcesManagerButton,
-            Theme.RESOURCES_ICON,
-            24,
-            Color.GREY,
-            resourcesManagerButton.getTooltip().getText());
-      }
+      setButton(button, icon, 16, color, tooltip);
+    }
 
-      if (serviceType == KlabService.Type.RUNTIME
-          && user.getServices(RuntimeService.class).stream()
-              .anyMatch(s -> s.status().isOperational())) {
-        setButton(
-            digitalTwinsButton,
-            Theme.DIGITAL_TWINS_ICON,
-            24,
-            Color.DARKRED,
-            digitalTwinsButton.getTooltip().getText());
-      } else {
-        setButton(
-            digitalTwinsButton,
-            Theme.DIGITAL_TWINS_ICON,
-            24,
-            Color.GREY,
-            digitalTwinsButton.getTooltip().getText());
-      }
+    if (services.get(KlabService.Type.RESOURCES).operational() > 0) {
+      setButton(
+          workspacesButton,
+          Theme.RESOURCES_ICON,
+          24,
+          Color.DARKGREEN,
+          workspacesButton.getTooltip().getText());
+      setButton(
+          resourcesManagerButton,
+          Theme.RESOURCES_ICON,
+          24,
+          Color.DARKGREEN,
+          resourcesManagerButton.getTooltip().getText());
+    } else {
+      setButton(
+          workspacesButton,
+          Theme.WORKSPACES_ICON,
+          24,
+          Color.GREY,
+          workspacesButton.getTooltip().getText());
+      setButton(
+          resourcesManagerButton,
+          Theme.RESOURCES_ICON,
+          24,
+          Color.GREY,
+          resourcesManagerButton.getTooltip().getText());
+    }
 
-      setButton(button, icon, 16, color, tooltip);
+    if (services.get(KlabService.Type.RUNTIME).operational() > 0) {
+      setButton(
+          digitalTwinsButton,
+          Theme.DIGITAL_TWINS_ICON,
+          24,
+          Color.DARKRED,
+          digitalTwinsButton.getTooltip().getText());
+    } else {
+      setButton(
+          digitalTwinsButton,
+          Theme.DIGITAL_TWINS_ICON,
+          24,
+          Color.GREY,
+          digitalTwinsButton.getTooltip().getText());
     }
   }
 
   @Override
-  public void notifyServiceStatus(KlabService service, KlabService.ServiceStatus status) {}
+  public void notifyServiceStatus(KlabService service, KlabService.ServiceStatus status) {
+    serviceInfo.putStatus(service, status);
+  }
 
   @Override
   public void engineStatusChanged(Engine.Status status) {
     // This only gets called when the status has changed.
     Logging.INSTANCE.info("" + status);
+    // capabilities are dropped by the service status notifications if availability changed
+    serviceInfo.invalidateStatus();
+    // one status call per service for all the indicators below
+    var services = ServiceStatusSnapshot.of(modeler().user(), serviceInfo, SERVICE_TYPES);
 
     if (status.isAvailable()) {
 
       if (distribution != null) {
-        var localServicesCount =
-            modeler().user().getServices(Reasoner.class).stream()
-                    .filter(s -> Utils.URLs.isLocalHost(s.getUrl()))
-                    .count()
-                + modeler().user().getServices(RuntimeService.class).stream()
-                    .filter(s -> Utils.URLs.isLocalHost(s.getUrl()))
-                    .count()
-                + modeler().user().getServices(Resolver.class).stream()
-                    .filter(s -> Utils.URLs.isLocalHost(s.getUrl()))
-                    .count()
-                + modeler().user().getServices(ResourcesService.class).stream()
-                    .filter(s -> Utils.URLs.isLocalHost(s.getUrl()))
-                    .count();
-
-        var localOperationalCount =
-            modeler().user().getServices(Reasoner.class).stream()
-                    .filter(s -> s.status().isOperational() && Utils.URLs.isLocalHost(s.getUrl()))
-                    .count()
-                + modeler().user().getServices(RuntimeService.class).stream()
-                    .filter(s -> s.status().isOperational() && Utils.URLs.isLocalHost(s.getUrl()))
-                    .count()
-                + modeler().user().getServices(Resolver.class).stream()
-                    .filter(s -> s.status().isOperational() && Utils.URLs.isLocalHost(s.getUrl()))
-                    .count()
-                + modeler().user().getServices(ResourcesService.class).stream()
-                    .filter(s -> s.status().isOperational() && Utils.URLs.isLocalHost(s.getUrl()))
-                    .count();
+        var localServicesCount = services.getLocalCount();
+        var localOperationalCount = services.getLocalOperationalCount();
 
         if (localServicesCount == 0) {
           setButton(
@@ -585,7 +587,7 @@ public class KlabIDEController implements UIView, ServicesView, RuntimeView {
      * operational -> icon; Engine on/off: all services operational -> stop; no service or none
      * available -> on; anything else -> wait;
      */
-    checkServices(modeler().user(), status);
+    checkServices(modeler().user(), services);
 
 //    this.workspaceView.updateServices(status);
   }
@@ -615,6 +617,7 @@ public class KlabIDEController implements UIView, ServicesView, RuntimeView {
   @Override
   public void notifyNewDigitalTwin(ContextScope scope, RuntimeService service) {
     //    var ret = this.digitalTwinView.showDigitalTwin(scope, service);
+    contextIndex.invalidate(service.serviceId());
   }
 
   @Override
@@ -0,0 +1,105 @@
+package org.integratedmodelling.klab.ide.api;
+
+import org.integratedmodelling.klab.api.provenance.Activity;
+import org.integratedmodelling.klab.ide.utils.PersistentVector;
+
+/**
+ * Immutable, versioned snapshot of the activity hierarchy seen during contextualization. Each
+ * activity has a stable index in insertion order; the hierarchy is based on transient information
+ * collected during resolution, so each activity has at most one parent.
+ *
+ * <p>Snapshots are persistent: {@link #withActivity(Activity, int)} returns a new version that
+ * shares almost all of its structure with this one, so the {@link
+ * org.integratedmodelling.klab.ide.model.DigitalTwinPeer} can publish a new version for every
+ * change and viewers on any thread can read any version without locking or copying. Note that the
+ * activity objects themselves are updated in place when they finish.
+ */
+public final class ActivityGraph {
+
+  public static final ActivityGraph EMPTY =
+      new ActivityGraph(0, PersistentVector.empty(), null, 0);
+
+  /** Immutable list of indices, most recent first. */
+  private record IndexList(int index, IndexList next) {}
+
+  private record Node(Activity activity, int parent, IndexList children, int childCount) {}
+
+  private final long version;
+  private final PersistentVector<Node> nodes;
+  private final IndexList roots;
+  private final int rootCount;
+
+  private ActivityGraph(
+      long version, PersistentVector<Node> nodes, IndexList roots, int rootCount) {
+    this.version = version;
+    this.nodes = nodes;
+    this.roots = roots;
+    this.rootCount = rootCount;
+  }
+
+  /**
+   * Return a new version with the passed activity added at index {@link #size()}.
+   *
+   * @param activity
+   * @param parent index of the parent activity, or -1 for a root activity
+   * @return the new version
+   */
+  public ActivityGraph withActivity(Activity activity, int parent) {
+    int index = nodes.size();
+    var newNodes = nodes.append(new Node(activity, parent, null, 0));
+    if (parent < 0) {
+      return new ActivityGraph(version + 1, newNodes, new IndexList(index, roots), rootCount + 1);
+    }
+    var parentNode = nodes.get(parent);
+    newNodes =
+        newNodes.set(
+            parent,
+            new Node(
+                parentNode.activity(),
+                parentNode.parent(),
+                new IndexList(index, parentNode.children()),
+                parentNode.childCount() + 1));
+    return new ActivityGraph(version + 1, newNodes, roots, rootCount);
+  }
+
+  /** Return this same graph with a new version number, after activities were updated in place. */
+  public ActivityGraph touch() {
+    return new ActivityGraph(version + 1, nodes, roots, rootCount);
+  }
+
+  public long getVersion() {
+    return version;
+  }
+
+  public int size() {
+    return nodes.size();
+  }
+
+  public Activity getActivity(int index) {
+    return nodes.get(index).activity();
+  }
+
+  /** Index of the parent activity, or -1 for root activities. */
+  public int getParent(int index) {
+    return nodes.get(index).parent();
+  }
+
+  /** Indices of the child activities, in insertion order. */
+  public int[] getChildren(int index) {
+    var node = nodes.get(index);
+    return toArray(node.children(), node.childCount());
+  }
+
+  /** Indices of the activities without a parent, in insertion order. */
+  public int[] getRoots() {
+    return toArray(roots, rootCount);
+  }
+
+  private static int[] toArray(IndexList list, int count) {
+    int[] ret = new int[count];
+    for (int i = count - 1; list != null; i--, list = list.next()) {
+      ret[i] = list.index();
+    }
+    return ret;
+  }
+}
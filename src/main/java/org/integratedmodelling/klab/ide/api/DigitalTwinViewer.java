@@ -1,11 +1,10 @@
 package org.integratedmodelling.klab.ide.api;
 
+import org.integratedmodelling.klab.api.data.RuntimeAsset;
 import org.integratedmodelling.klab.api.digitaltwin.GraphModel;
 import org.integratedmodelling.klab.api.knowledge.observation.Observation;
 import org.integratedmodelling.klab.api.knowledge.observation.scale.time.Schedule;
 import org.integratedmodelling.klab.api.provenance.Activity;
-import org.jgrapht.Graph;
-import org.jgrapht.graph.DefaultEdge;
 
 public interface DigitalTwinViewer {
 
@@ -31,9 +30,30 @@ public interface DigitalTwinViewer {
    * not related to the provenance graph structure (it must be reconstructed from the metadata if
    * restored from the knowledge graph).
    *
+   * <p>The graph is an immutable snapshot: it can be kept and read from any thread without copying.
+   *
    * TODO to use: collect the root observations, sort by start or end, display as needed.
    *
    * @param activityGraph
    */
-  void activitiesModified(Graph<Activity, DefaultEdge> activityGraph);
+  void activitiesModified(ActivityGraph activityGraph);
+
+  /**
+   * Incremental counterpart of {@link #knowledgeGraphModified()}, called right before it with the
+   * assets and relationships that changed since the previous call. Viewers that implement this
+   * should not rebuild their state in {@link #knowledgeGraphModified()}.
+   *
+   * @param delta
+   */
+  default void knowledgeGraphChanged(GraphDelta<RuntimeAsset, GraphModel.Relationship> delta) {}
+
+  /**
+   * Incremental counterpart of {@link #activitiesModified(ActivityGraph)}, called right before it
+   * with the activities that were started or finished since the previous call. Activity edges are
+   * untyped parent-child links. Viewers that implement this should not rebuild their state in
+   * {@link #activitiesModified(ActivityGraph)}.
+   *
+   * @param delta
+   */
+  default void activitiesChanged(GraphDelta<Activity, Void> delta) {}
 }
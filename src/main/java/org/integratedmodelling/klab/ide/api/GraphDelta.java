@@ -0,0 +1,40 @@
+package org.integratedmodelling.klab.ide.api;
+
+import java.util.List;
+
+/**
+ * The changes made to a graph between two consecutive versions, as computed once by the {@link
+ * org.integratedmodelling.klab.ide.model.DigitalTwinPeer} and passed to all {@link
+ * DigitalTwinViewer}s so that they can update in proportion to the change instead of the graph
+ * size.
+ *
+ * <p>A delta with {@code snapshot == true} is sent to newly registered viewers and carries the
+ * entire graph as added vertices and edges: viewers should discard any previous state when they
+ * receive it. Versions increase by one for each non-snapshot delta.
+ *
+ * @param <V> vertex type
+ * @param <E> edge type
+ */
+public record GraphDelta<V, E>(
+    long version,
+    boolean snapshot,
+    List<V> addedVertices,
+    List<V> removedVertices,
+    List<V> updatedVertices,
+    List<Edge<V, E>> addedEdges,
+    List<Edge<V, E>> removedEdges) {
+
+  /**
+   * An edge with its endpoints, so that removed edges can be handled after the vertices are gone
+   * from the source graph.
+   */
+  public record Edge<V, E>(V source, V target, E type) {}
+
+  public boolean isEmpty() {
+    return addedVertices.isEmpty()
+        && removedVertices.isEmpty()
+        && updatedVertices.isEmpty()
+        && addedEdges.isEmpty()
+        && removedEdges.isEmpty();
+  }
+}
@@ -0,0 +1,88 @@
+package org.integratedmodelling.klab.ide.components;
+
+import com.brunomnsilva.smartgraph.graphview.SmartGraphPanel;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.integratedmodelling.common.services.client.digitaltwin.ClientKnowledgeGraph;
+import org.integratedmodelling.klab.api.data.RuntimeAsset;
+import org.integratedmodelling.klab.api.knowledge.observation.Observation;
+import org.integratedmodelling.klab.ide.Theme;
+
+/**
+ * Single vertex standing for a group of assets of the same kind linked from the same source, such
+ * as the instances of a plural subject. Delegates to the first member so that it classifies and
+ * styles like the assets it replaces.
+ */
+public class AggregateAsset extends Asset {
+
+  /** Identifies a group: the source asset and the kind of the linked assets. */
+  record Key(long source, String kind) {}
+
+  private final Key key;
+  private final List<RuntimeAsset> members;
+  private final Set<Long> memberIds = new HashSet<>();
+  private final ClientKnowledgeGraph.Relationship relationship;
+
+  AggregateAsset(
+      Key key, List<RuntimeAsset> members, ClientKnowledgeGraph.Relationship relationship) {
+    super(members.getFirst());
+    this.key = key;
+    this.members = new ArrayList<>(members);
+    for (var member : members) {
+      memberIds.add(member.getId());
+    }
+    this.relationship = relationship;
+  }
+
+  /**
+   * The grouping key for an asset: the observable for observations, the asset type for anything
+   * else.
+   */
+  static String kindOf(RuntimeAsset asset) {
+    if (asset instanceof Observation observation) {
+      return observation.getObservable().getSemantics().getUrn();
+    }
+    return asset.classify().name();
+  }
+
+  public Key getKey() {
+    return key;
+  }
+
+  public List<RuntimeAsset> getMembers() {
+    return members;
+  }
+
+  /**
+   * Add an asset that joined the group after the aggregate was created. The label shown for the
+   * aggregate must then be refreshed, as it includes the member count.
+   *
+   * @return false if the asset was already a member
+   */
+  public boolean addMember(RuntimeAsset asset) {
+    if (!memberIds.add(asset.getId())) {
+      return false;
+    }
+    members.add(asset);
+    return true;
+  }
+
+  /** The relationship of one of the members, used as the element of the edge to the aggregate. */
+  public ClientKnowledgeGraph.Relationship getRelationship() {
+    return relationship;
+  }
+
+  @Override
+  public String toString() {
+    return members.size() + " × " + Theme.getLabel(delegate);
+  }
+
+  @Override
+  public void setStyle(
+      SmartGraphPanel<RuntimeAsset, ClientKnowledgeGraph.Relationship> graphView) {
+    super.setStyle(graphView);
+    graphView.getStylableVertex(this).addStyleClass("aggregateVertex");
+  }
+}
@@ -537,6 +537,38 @@ public class Components {
     }
   }
 
+  /**
+   * Stands for the contents expected from a service while they are being retrieved, and shows why
+   * if they could not be.
+   */
+  public static class ServicePlaceholder extends BaseComponent {
+
+    private final Label message = new Label();
+    private final ProgressIndicator progress = new ProgressIndicator();
+
+    public ServicePlaceholder(String serviceName) {
+      super(Type.Object, serviceName, false);
+      createContent();
+    }
+
+    @Override
+    protected void createContent() {
+      progress.setPrefSize(16, 16);
+      message.setText("Contacting " + title + "...");
+      message.setStyle("-fx-text-fill: -color-fg-subtle;");
+      var box = new HBox(8, progress, message);
+      box.setAlignment(Pos.CENTER_LEFT);
+      box.setPadding(new Insets(4, 8, 4, 8));
+      this.getChildren().add(box);
+    }
+
+    public void setFailed(String reason) {
+      progress.setVisible(false);
+      progress.setManaged(false);
+      message.setText(title + " unavailable: " + reason);
+    }
+  }
+
   public static class Services extends BaseComponent {
 
     public Services() {
@@ -911,7 +943,10 @@ public class Components {
       Label nameLabel =
           new Label(
               "Service: "
-                  + service.capabilities(KlabIDEController.modeler().user()).getServiceName());
+                  + KlabIDEController.instance()
+                      .getServiceInfo()
+                      .capabilities(service, KlabIDEController.modeler().user())
+                      .getServiceName());
       nameLabel.setStyle("-fx-font-weight: bold");
 
       Hyperlink hostLink = new Hyperlink(service.getUrl().toString());
@@ -997,7 +1032,10 @@ public class Components {
       ComboBox<String> importSchemaSelector = new ComboBox<>();
       importSchemaSelector.setPromptText("Select Import Schema");
       var importSchemata =
-          service.capabilities(KlabIDEController.modeler().user()).getImportSchemata();
+          KlabIDEController.instance()
+              .getServiceInfo()
+              .capabilities(service, KlabIDEController.modeler().user())
+              .getImportSchemata();
       final var schemaKey = new HashMap<String, ResourceTransport.Schema>();
       for (var schemaName : importSchemata.keySet()) {
         for (var schema : importSchemata.get(schemaName)) {
@@ -20,19 +20,16 @@ import org.integratedmodelling.klab.api.provenance.Activity;
 import org.integratedmodelling.klab.api.scope.ContextScope;
 import org.integratedmodelling.klab.ide.KlabIDEController;
 import org.integratedmodelling.klab.ide.Theme;
+import org.integratedmodelling.klab.ide.api.ActivityGraph;
 import org.integratedmodelling.klab.ide.api.DigitalTwinViewer;
+import org.integratedmodelling.klab.ide.api.GraphDelta;
 import org.integratedmodelling.klab.ide.model.DigitalTwinPeer;
 import org.integratedmodelling.klab.ide.pages.EditorPage;
-import org.jgrapht.Graph;
-import org.jgrapht.graph.DefaultEdge;
 import org.kordamp.ikonli.javafx.FontIcon;
 import org.kordamp.ikonli.material2.Material2AL;
 import org.kordamp.ikonli.material2.Material2MZ;
 
-import java.util.Comparator;
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 /**
@@ -68,6 +65,8 @@ public class DigitalTwinControlPanel extends BorderPane implements DigitalTwinVi
   private TreeTableView<Activity> treeTableView;
   /* controller is bound after the first observation is made */
   private DigitalTwinPeer controller;
+  /* activity items by transient ID, only accessed on the FX thread */
+  private final Map<Long, TreeItem<Activity>> activityItems = new HashMap<>();
 
   // otherwise?
 
@@ -306,42 +305,56 @@ public class DigitalTwinControlPanel extends BorderPane implements DigitalTwinVi
   public void knowledgeGraphModified() {}
 
   @Override
-  public void activitiesModified(Graph<Activity, DefaultEdge> activityGraph) {
-    // Create defensive copies of the data to avoid ConcurrentModificationException
-    var vertices = new ArrayList<>(activityGraph.vertexSet());
-    var rootActivities = vertices.stream()
-        .filter(activity -> activityGraph.incomingEdgesOf(activity).isEmpty())
-        .sorted(Comparator.comparingLong(Activity::getStart))
-        .toList();
-    
-    // Create a snapshot of the graph structure for each activity
-    var activityChildren = new HashMap<Activity, List<Activity>>();
-    for (Activity activity : vertices) {
-      var children = activityGraph.outgoingEdgesOf(activity).stream()
-          .map(activityGraph::getEdgeTarget)
-          .toList();
-      activityChildren.put(activity, children);
-    }
-    
+  public void activitiesModified(ActivityGraph activityGraph) {
+    // handled incrementally in activitiesChanged()
+  }
+
+  @Override
+  public void activitiesChanged(GraphDelta<Activity, Void> delta) {
     Platform.runLater(
         () -> {
-          treeTableView.getRoot().getChildren().clear();
-          for (Activity activity : rootActivities) {
-            treeTableView.getRoot().getChildren().add(makeItem(activity, activityChildren));
+          var roots = treeTableView.getRoot().getChildren();
+          if (delta.snapshot()) {
+            roots.clear();
+            activityItems.clear();
+          }
+          for (Activity activity : delta.addedVertices()) {
+            var item = new TreeItem<>(activity);
+            activityItems.put(activity.getTransientId(), item);
+            insertRoot(item);
+          }
+          for (var edge : delta.addedEdges()) {
+            var parent = activityItems.get(edge.source().getTransientId());
+            var child = activityItems.get(edge.target().getTransientId());
+            if (parent != null && child != null && child.getParent() != parent) {
+              if (child.getParent() != null) {
+                child.getParent().getChildren().remove(child);
+              }
+              parent.getChildren().add(child);
+            }
+          }
+          if (!delta.updatedVertices().isEmpty()) {
+            // activities are updated in place, so the cells just need to be redrawn
+            treeTableView.refresh();
           }
         });
   }
 
-  private TreeItem<Activity> makeItem(
-      Activity activity, Map<Activity, List<Activity>> activityChildren) {
-    TreeItem<Activity> ret = new TreeItem<>(activity);
-    List<Activity> children = activityChildren.get(activity);
-    if (children != null) {
-      for (Activity child : children) {
-        ret.getChildren().add(makeItem(child, activityChildren));
+  /** Insert a parentless activity among the roots, keeping them sorted by start time. */
+  private void insertRoot(TreeItem<Activity> item) {
+    var roots = treeTableView.getRoot().getChildren();
+    long start = item.getValue().getStart();
+    int low = 0;
+    int high = roots.size();
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (roots.get(mid).getValue().getStart() <= start) {
+        low = mid + 1;
+      } else {
+        high = mid;
       }
     }
-    return ret;
+    roots.add(low, item);
   }
 
   @Override
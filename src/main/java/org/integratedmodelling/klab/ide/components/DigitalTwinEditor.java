@@ -12,7 +12,6 @@ import javafx.scene.layout.HBox;
 import org.integratedmodelling.common.services.client.digitaltwin.ClientDigitalTwin;
 import org.integratedmodelling.common.services.client.digitaltwin.ClientKnowledgeGraph;
 import org.integratedmodelling.klab.api.data.RuntimeAsset;
-import org.integratedmodelling.klab.api.digitaltwin.GraphModel;
 import org.integratedmodelling.klab.api.knowledge.observation.Observation;
 import org.integratedmodelling.klab.api.knowledge.observation.scale.time.Schedule;
 import org.integratedmodelling.klab.api.provenance.Activity;
@@ -20,11 +19,10 @@ import org.integratedmodelling.klab.api.scope.ContextScope;
 import org.integratedmodelling.klab.api.services.RuntimeService;
 import org.integratedmodelling.klab.ide.KlabIDEController;
 import org.integratedmodelling.klab.ide.Theme;
+import org.integratedmodelling.klab.ide.api.ActivityGraph;
 import org.integratedmodelling.klab.ide.api.DigitalTwinViewer;
 import org.integratedmodelling.klab.ide.model.DigitalTwinPeer;
 import org.integratedmodelling.klab.ide.pages.EditorPage;
-import org.jgrapht.Graph;
-import org.jgrapht.graph.DefaultEdge;
 
 public class DigitalTwinEditor extends EditorPage<RuntimeAsset> implements DigitalTwinViewer {
 
@@ -36,8 +34,7 @@ public class DigitalTwinEditor extends EditorPage<RuntimeAsset> implements Digit
   private HBox menuArea;
   private KnowledgeGraphTree treeView;
   private RuntimeAsset context;
-  private KnowledgeGraphView knowledgeGraphView;
-  private TreeItem<RuntimeAsset> root;
+  private DigitalTwinViewer knowledgeGraphView;
   //  private Map<Long, Activity> activities = new TreeMap<>();
   private final ContextScope contextScope;
 
@@ -51,13 +48,12 @@ public class DigitalTwinEditor extends EditorPage<RuntimeAsset> implements Digit
       this.knowledgeGraph = (ClientKnowledgeGraph) clientDigitalTwin.getKnowledgeGraph();
     }
     this.context = RuntimeAsset.CONTEXT_ASSET;
-    this.root = defineTree(this.context);
     this.view = digitalTwinView;
   }
 
   @Override
   public void knowledgeGraphModified() {
-    updateTree(this.context);
+    // nothing to do: the tree is registered with the peer and applies the deltas itself
   }
 
   @Override
@@ -87,7 +83,8 @@ public class DigitalTwinEditor extends EditorPage<RuntimeAsset> implements Digit
   @Override
   protected TreeView<RuntimeAsset> createContentTree() {
 
-    treeView = new KnowledgeGraphTree(this.root);
+    // filled from the snapshot the tree receives when registered with the peer
+    treeView = new KnowledgeGraphTree(this.context);
     controller.register(treeView);
     treeView.setCellFactory(p -> new AssetTreeCell());
     treeView.getStyleClass().addAll(Tweaks.EDGE_TO_EDGE, Styles.DENSE);
@@ -135,34 +132,7 @@ public class DigitalTwinEditor extends EditorPage<RuntimeAsset> implements Digit
   }
 
   @Override
-  public void activitiesModified(Graph<Activity, DefaultEdge> activityGraph) {}
-
-  private List<RuntimeAsset> children(RuntimeAsset asset) {
-    if (controller.scope().getDigitalTwin().getKnowledgeGraph()
-        instanceof ClientKnowledgeGraph clientKnowledgeGraph) {
-      return clientKnowledgeGraph.outgoing(asset, GraphModel.Relationship.HAS_CHILD);
-    }
-    return List.of();
-  }
-
-  /**
-   * Tree behavior:
-   *
-   * <p>on explicit observation submission received: add it in ctx with clock icon on resolved tree
-   * received:
-   *
-   * <p>on submission failed: on submission finished: check if empty;
-   *
-   * @param asset
-   * @return
-   */
-  private TreeItem<RuntimeAsset> defineTree(RuntimeAsset asset) {
-    var ret = new TreeItem<>(asset);
-    for (var child : children(asset)) {
-      ret.getChildren().add(defineTree(child));
-    }
-    return ret;
-  }
+  public void activitiesModified(ActivityGraph activityGraph) {}
 
   @Override
   protected void configureDigitalTwinWidget(DigitalTwinControlPanel digitalTwinMinified) {
@@ -173,57 +143,20 @@ public class DigitalTwinEditor extends EditorPage<RuntimeAsset> implements Digit
   @Override
   protected Node createEditor(RuntimeAsset asset) {
     if (asset == context) {
-      return this.knowledgeGraphView =
-          new KnowledgeGraphView(this.controller.scope(), this.knowledgeGraph, this);
-    }
-    return null;
-  }
-
-  private TreeItem<RuntimeAsset> findTreeItemById(TreeItem<RuntimeAsset> current, long id) {
-    if (current.getValue().getId() == id) {
-      return current;
-    }
-    for (TreeItem<RuntimeAsset> child : current.getChildren()) {
-      TreeItem<RuntimeAsset> result = findTreeItemById(child, id);
-      if (result != null) {
-        return result;
+      var renderer =
+          KlabIDEController.instance().getSettings().getKnowledgeGraphRenderer().getValue();
+      if ("canvas".equals(renderer)) {
+        var canvas = new KnowledgeGraphCanvas(this.controller.scope(), this);
+        this.knowledgeGraphView = canvas;
+        return canvas;
       }
+      var graphView = new KnowledgeGraphView(this.controller.scope(), this.knowledgeGraph, this);
+      this.knowledgeGraphView = graphView;
+      return graphView;
     }
     return null;
   }
 
-  private void updateTree(RuntimeAsset changed) {
-    Platform.runLater(
-        () -> {
-          if (treeView == null || treeView.getSelectionModel() == null) {
-            return;
-          }
-
-          // Store selection to restore it later
-          TreeItem<RuntimeAsset> selectedItem = treeView.getSelectionModel().getSelectedItem();
-
-          // Temporarily disable cell updates to prevent flickering
-          treeView.setDisable(true);
-
-          try {
-            treeView.getRoot().getChildren().clear();
-            TreeItem<RuntimeAsset> newRoot = defineTree(RuntimeAsset.CONTEXT_ASSET);
-            treeView.setRoot(root = newRoot);
-
-            // Restore selection if possible
-            if (selectedItem != null) {
-              TreeItem<RuntimeAsset> newSelectedItem =
-                  findTreeItemById(newRoot, selectedItem.getValue().getId());
-              if (newSelectedItem != null) {
-                treeView.getSelectionModel().select(newSelectedItem);
-              }
-            }
-          } finally {
-            treeView.setDisable(false);
-          }
-        });
-  }
-
   public RuntimeAsset getRootAsset() {
     return this.context;
   }
@@ -245,10 +178,12 @@ public class DigitalTwinEditor extends EditorPage<RuntimeAsset> implements Digit
 
   public void selectAsset(RuntimeAsset asset) {
     // TODO we can link the action to the selection and stop here.
-    var item = findTreeItemById(root, asset.getId());
     Platform.runLater(
         () -> {
-          treeView.getSelectionModel().select(item);
+          var item = treeView.getItem(asset.getId());
+          if (item != null) {
+            treeView.getSelectionModel().select(item);
+          }
         });
   }
 
@@ -32,6 +32,10 @@ public class DigitalTwinView extends BrowsablePage<DigitalTwinEditor> {
   private List<Node> components = new ArrayList<>();
   private Node workspaceDialog;
 
+  public DigitalTwinView() {
+    KlabIDEController.instance().getContextIndex().addListener(this::updateBrowser);
+  }
+
   @Override
   public String getName() {
     return "Digital Twins";
@@ -63,11 +67,26 @@ public class DigitalTwinView extends BrowsablePage<DigitalTwinEditor> {
   public List<ContextInfo> getContextList() {
     List<ContextInfo> ret = new ArrayList<>();
     for (var rService : getServices()) {
-      for (var workspace : rService.getSessionInfo(KlabIDEController.modeler().user())) {
-        for (var context : workspace.getContexts()) {
-          ret.addAll(workspace.getContexts());
-        }
+      ret.addAll(getContextList(rService));
+    }
+    return ret;
+  }
+
+  /**
+   * The contexts known for the service, only asking the service if they are not indexed yet.
+   * Blocking: call off the FX thread.
+   */
+  public List<ContextInfo> getContextList(RuntimeService rService) {
+    var index = KlabIDEController.instance().getContextIndex();
+    var ret = index.get(rService.serviceId());
+    if (ret == null) {
+      long generation = index.generation(rService.serviceId());
+      ret = new ArrayList<>();
+      for (var session : rService.getSessionInfo(KlabIDEController.modeler().user())) {
+        ret.addAll(session.getContexts());
       }
+      // not indexed if a change came in meanwhile, which also shows the browser again
+      index.put(rService.serviceId(), generation, ret);
     }
     return ret;
   }
@@ -83,14 +102,25 @@ public class DigitalTwinView extends BrowsablePage<DigitalTwinEditor> {
           if (workspaceDialog != null) {
             components.add(workspaceDialog);
           }
-          for (var dt : getContextList()) {
-            // TODO skip the opened ones
-            var dtComponent =
-                new Components.DigitalTwin(dt, this::showDigitalTwin, this::removeDigitalTwin);
-            components.add(dtComponent);
-            dtComponent.createContent();
-          }
           browserComponents.getChildren().addAll(components);
+          populateBrowser(
+              browserComponents,
+              components,
+              getServices(),
+              RuntimeService::getServiceName,
+              this::getContextList,
+              contexts -> {
+                var ret = new ArrayList<Node>();
+                for (var dt : contexts) {
+                  // TODO skip the opened ones
+                  var dtComponent =
+                      new Components.DigitalTwin(
+                          dt, this::showDigitalTwin, this::removeDigitalTwin);
+                  dtComponent.createContent();
+                  ret.add(dtComponent);
+                }
+                return ret;
+              });
         });
   }
 
@@ -105,7 +135,9 @@ public class DigitalTwinView extends BrowsablePage<DigitalTwinEditor> {
         KlabIDEController.modeler().user().getServices(RuntimeService.class).stream()
             .filter(
                 s ->
-                    s.capabilities(KlabIDEController.modeler().user())
+                    KlabIDEController.instance()
+                        .getServiceInfo()
+                        .capabilities(s, KlabIDEController.modeler().user())
                         .getPermissions()
                         .contains(CRUDOperation.CREATE))
             .toList();
@@ -195,7 +227,10 @@ public class DigitalTwinView extends BrowsablePage<DigitalTwinEditor> {
   }
 
   public void removeDigitalTwin(ContextScope scope) {
-    DigitalTwinEditor ret = null;
+    if (scope == null) {
+      return;
+    }
+    KlabIDEController.instance().getContextIndex().remove(scope.getId());
     hideBrowser();
     if (openEditors.containsKey(scope.getId())) {
       removeEditor(openEditors.get(scope.getId()));
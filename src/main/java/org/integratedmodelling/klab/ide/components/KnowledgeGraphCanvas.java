@@ -0,0 +1,1108 @@
+package org.integratedmodelling.klab.ide.components;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.control.Tooltip;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.scene.input.MouseButton;
+import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+import org.integratedmodelling.klab.api.data.RuntimeAsset;
+import org.integratedmodelling.klab.api.digitaltwin.GraphModel;
+import org.integratedmodelling.klab.api.knowledge.SemanticType;
+import org.integratedmodelling.klab.api.knowledge.observation.Observation;
+import org.integratedmodelling.klab.api.knowledge.observation.scale.time.Schedule;
+import org.integratedmodelling.klab.api.scope.ContextScope;
+import org.integratedmodelling.klab.ide.KlabIDEController;
+import org.integratedmodelling.klab.ide.Theme;
+import org.integratedmodelling.klab.ide.api.ActivityGraph;
+import org.integratedmodelling.klab.ide.api.DigitalTwinViewer;
+import org.integratedmodelling.klab.ide.api.GraphDelta;
+import org.integratedmodelling.klab.ide.model.ForceLayout;
+import org.integratedmodelling.klab.ide.model.Neighbourhood;
+
+/**
+ * Knowledge graph view that paints the graph on a single {@link Canvas} instead of creating a
+ * scene graph node per vertex and edge like {@link KnowledgeGraphView}. It shows the same {@link
+ * Neighbourhood} of the focal asset, which is the context until a submission finishes, up to
+ * {@link #MAX_ASSETS} assets rather than the budget sized for scene graph nodes. Vertices are
+ * kept in parallel arrays indexed by slot, laid out by a {@link ForceLayout} and redrawn only when
+ * the positions or the view transform change; only what falls in the viewport is painted, and when
+ * zoomed out or crowded the whole frame is plotted as pixels.
+ * Clicks and tooltips use a uniform grid over the vertex positions, rebuilt lazily when they move.
+ *
+ * <p>Graph deltas append slots for new vertices and relationships and blank the removed ones, and
+ * the layout is amended rather than restarted, so that an update costs the size of the change.
+ *
+ * <p>Styles are resolved once per vertex from its {@link RuntimeAsset.Type} and, for observations,
+ * its semantic type. Scroll to zoom, drag to pan, double-click a vertex to focus on it.
+ */
+public class KnowledgeGraphCanvas extends BorderPane implements DigitalTwinViewer {
+
+  /** Precomputed vertex styles, mirroring the classes in smartgraph.css. */
+  enum VertexStyle {
+    DEFAULT(Color.web("#B1DFF7"), Color.web("#61B5F1"), 1, 6),
+    CONTEXT(Color.WHITE, Color.web("#61B5F1"), 1, 9),
+    QUALITY(Color.web("#9fda32"), Color.GREEN, 1, 6),
+    SUBJECT(Color.rgb(214, 143, 104), Color.rgb(165, 85, 42), 1, 7),
+    PLURAL_SUBJECT(Color.rgb(214, 143, 104), Color.rgb(165, 85, 42), 3, 8),
+    PROCESS(Color.web("#B1DFF7"), Color.web("#3B8FD0"), 1, 7),
+    EVENT(Color.web("#F7D9B1"), Color.web("#D0963B"), 1, 6),
+    RELATIONSHIP(Color.web("#E0E0E0"), Color.web("#909090"), 1, 5),
+    RUNTIME(Color.web("#D8D8F0"), Color.web("#8080B0"), 1, 5);
+
+    final Color fill;
+    final Color stroke;
+    final double strokeWidth;
+    final double radius;
+
+    VertexStyle(Color fill, Color stroke, double strokeWidth, double radius) {
+      this.fill = fill;
+      this.stroke = stroke;
+      this.strokeWidth = strokeWidth;
+      this.radius = radius;
+    }
+
+    static VertexStyle of(RuntimeAsset asset) {
+      return switch (asset.classify()) {
+        case CONTEXT -> CONTEXT;
+        case OBSERVATION -> asset instanceof Observation observation ? of(observation) : DEFAULT;
+        case ACTUATOR, DATAFLOW, PROVENANCE, ACTIVITY, PLAN, AGENT, ARTIFACT, DATA, LINK -> RUNTIME;
+      };
+    }
+
+    private static VertexStyle of(Observation observation) {
+      var observable = observation.getObservable();
+      if (observable.is(SemanticType.QUALITY)) {
+        return QUALITY;
+      } else if (observable.is(SemanticType.SUBJECT) || observable.is(SemanticType.AGENT)) {
+        return observable.getSemantics().isCollective() ? PLURAL_SUBJECT : SUBJECT;
+      } else if (observable.is(SemanticType.PROCESS)) {
+        return PROCESS;
+      } else if (observable.is(SemanticType.EVENT)) {
+        return EVENT;
+      } else if (observable.is(SemanticType.RELATIONSHIP)) {
+        return RELATIONSHIP;
+      }
+      return DEFAULT;
+    }
+  }
+
+  private record EdgeKey(long source, long target, GraphModel.Relationship type) {}
+
+  private static final Color BACKGROUND = Color.web("#F4FFFB");
+  private static final Color EDGE_COLOR = Color.web("#FF6D66", 0.8);
+  private static final Color LABEL_COLOR = Color.web("#303030");
+  private static final double MAX_VERTEX_RADIUS = 9;
+  // labels are only painted when vertices are at least this large on screen
+  private static final double LABEL_MIN_RADIUS = 8;
+  private static final int LAYOUT_FRAMES_PER_SECOND = 30;
+  // the frame is plotted into a pixel buffer below this on-screen radius or above this number of
+  // vertices in the viewport, where antialiased shapes take too long to rasterize
+  private static final double PLOT_MAX_RADIUS = 4;
+  private static final int PLOT_MIN_VERTICES = 2000;
+  private static final int PLOT_BACKGROUND = argb(BACKGROUND);
+  // the edge color blended over the background, as the pixels are opaque
+  private static final int PLOT_EDGE_COLOR =
+      argb(
+          BACKGROUND.interpolate(
+              Color.color(EDGE_COLOR.getRed(), EDGE_COLOR.getGreen(), EDGE_COLOR.getBlue()),
+              EDGE_COLOR.getOpacity()));
+  // removed slots are compacted with a full rebuild when they are more than this and the live ones
+  private static final int MIN_DEAD_SLOTS = 64;
+
+  /**
+   * The most assets shown at once. Plotted as pixels, 50,000 assets redraw at about 25 frames per
+   * second and 100,000 at 15 with the software pipeline on a single core; the layout, which runs
+   * on its own thread, is what slows down past that.
+   */
+  public static final int MAX_ASSETS = 100_000;
+
+  private final ContextScope scope;
+  private final DigitalTwinEditor editor;
+  private final Pane surface = new Pane();
+  private final Canvas canvas = new Canvas();
+  private final Timeline timeline;
+  private final Tooltip tooltip = new Tooltip();
+  private final ForceLayout layout;
+  // runs only while there is something to paint or the layout moves
+  private final AnimationTimer frameTimer;
+  private boolean frameTimerRunning;
+  private boolean closed;
+
+  // the whole graph, by id; only accessed on the FX thread
+  private final Map<Long, RuntimeAsset> assets = new HashMap<>();
+  private final Map<Long, List<EdgeKey>> outgoing = new HashMap<>();
+  private final Set<EdgeKey> edges = new HashSet<>();
+
+  // the neighbourhood of the focal asset that is shown, with the same filter as KnowledgeGraphView
+  private final int depth = Neighbourhood.DEFAULT_DEPTH;
+  private final Set<GraphModel.Relationship> relationships =
+      EnumSet.copyOf(Neighbourhood.DEFAULT_RELATIONSHIPS);
+  private long focusId = RuntimeAsset.CONTEXT_ASSET.getId();
+  private final Map<Long, Integer> levels = new LinkedHashMap<>();
+
+  // slots of the current layout generation. New vertices and edges get the next slot and removed
+  // ones leave a null vertex or a -1 source behind, so that the layout keeps its indices.
+  private final Map<Long, Integer> index = new HashMap<>();
+  private final Map<EdgeKey, Integer> edgeIndex = new HashMap<>();
+  private int vertexCount;
+  private RuntimeAsset[] vertices = new RuntimeAsset[0];
+  private VertexStyle[] styles = new VertexStyle[0];
+  // vertex slots by style ordinal, to paint each style in one run; slots whose style changed since
+  // are skipped
+  private int[][] verticesByStyle = new int[VertexStyle.values().length][0];
+  private int[] styleCounts = new int[VertexStyle.values().length];
+  private String[] labels = new String[0];
+  private int edgeCount;
+  private int[] edgeSources = new int[0];
+  private int[] edgeTargets = new int[0];
+  // the last positions from the layout, possibly fewer than the slots
+  private double[] x = new double[0];
+  private double[] y = new double[0];
+  private long layoutGeneration;
+  private long appliedLayoutVersion;
+
+  // slot changes not yet passed to the layout
+  private int firstNewVertex;
+  private int firstNewEdge;
+  private final List<Integer> removedVertexSlots = new ArrayList<>();
+  private final List<Integer> removedEdgeSlots = new ArrayList<>();
+
+  // hit-testing grid, rebuilt on demand after the vertices move
+  private boolean gridValid;
+  private double gridMinX;
+  private double gridMinY;
+  private double gridCellSize;
+  private int gridColumns;
+  private int gridRows;
+  private int[] gridStart = new int[0];
+  private int[] gridItems = new int[0];
+
+  // world to screen: screen = world * scale + offset
+  private double scale = 1;
+  private double offsetX;
+  private double offsetY;
+  private double dragX;
+  private double dragY;
+  private boolean dirty = true;
+  private int hovered = -1;
+  private RuntimeAsset pendingFocus;
+  private WritableImage plot;
+  private int[] plotPixels = new int[0];
+
+  public KnowledgeGraphCanvas(ContextScope scope, DigitalTwinEditor editor) {
+    this.scope = scope;
+    this.editor = editor;
+    this.layout = new ForceLayout("kg-canvas-layout-" + scope.getId(), LAYOUT_FRAMES_PER_SECOND);
+
+    surface.getChildren().add(canvas);
+    setCenter(surface);
+    canvas.widthProperty().bind(surface.widthProperty());
+    canvas.heightProperty().bind(surface.heightProperty());
+    canvas.widthProperty().addListener((obs, old, val) -> requestPaint());
+    canvas.heightProperty().addListener((obs, old, val) -> requestPaint());
+    // the tooltip is only installed over a vertex, and its text computed when it shows
+    tooltip.setOnShowing(event -> tooltip.setText(hovered < 0 ? "" : label(hovered)));
+
+    // same as in KnowledgeGraphView: hidden until there is a schedule
+    long currentTimeMs = System.currentTimeMillis();
+    timeline = new Timeline(currentTimeMs, currentTimeMs + 3600000 * 2, TimeUnit.MINUTES, 1);
+    setBottom(timeline);
+    timeline.setVisible(false);
+    canvas.setOnScroll(
+        event -> {
+          double factor = event.getDeltaY() > 0 ? 1.1 : 1 / 1.1;
+          // zoom around the pointer
+          offsetX = event.getX() - (event.getX() - offsetX) * factor;
+          offsetY = event.getY() - (event.getY() - offsetY) * factor;
+          scale *= factor;
+          requestPaint();
+        });
+    canvas.setOnMousePressed(
+        event -> {
+          dragX = event.getX();
+          dragY = event.getY();
+        });
+    canvas.setOnMouseDragged(
+        event -> {
+          offsetX += event.getX() - dragX;
+          offsetY += event.getY() - dragY;
+          dragX = event.getX();
+          dragY = event.getY();
+          requestPaint();
+        });
+    canvas.setOnMouseMoved(
+        event -> {
+          int hit = hitTest(event.getX(), event.getY());
+          if (hit != hovered) {
+            hovered = hit;
+            tooltip.hide();
+            if (hit >= 0) {
+              Tooltip.install(canvas, tooltip);
+            } else {
+              Tooltip.uninstall(canvas, tooltip);
+            }
+            requestPaint();
+          }
+        });
+    canvas.setOnMouseClicked(
+        event -> {
+          if (event.getButton() == MouseButton.PRIMARY && event.getClickCount() == 2) {
+            int hit = hitTest(event.getX(), event.getY());
+            if (hit >= 0) {
+              var asset = vertices[hit];
+              this.editor.selectAsset(asset);
+              KlabIDEController.instance().requireDigitalTwinPeer(this.scope).focus(asset);
+            }
+          }
+        });
+
+    this.frameTimer =
+        new AnimationTimer() {
+          @Override
+          public void handle(long now) {
+            applyLayout();
+            if (dirty) {
+              dirty = false;
+              paint();
+            }
+            if (isLayoutIdle()) {
+              stop();
+              frameTimerRunning = false;
+            }
+          }
+        };
+    wakeFrameTimer();
+
+    KlabIDEController.instance().requireDigitalTwinPeer(scope).register(this);
+  }
+
+  /**
+   * Apply the delta to the graph and to the shown neighbourhood: new relationships from shown
+   * assets closer than the depth bring in their targets, and the slots of the shown assets and
+   * relationships are appended or removed without restarting the layout. A snapshot refocuses from
+   * scratch.
+   */
+  @Override
+  public void knowledgeGraphChanged(GraphDelta<RuntimeAsset, GraphModel.Relationship> delta) {
+    Platform.runLater(
+        () -> {
+          if (delta.snapshot()) {
+            assets.clear();
+            outgoing.clear();
+            edges.clear();
+          }
+          var removedIds = new HashSet<Long>();
+          for (var asset : delta.removedVertices()) {
+            assets.remove(asset.getId());
+            outgoing.remove(asset.getId());
+            removedIds.add(asset.getId());
+          }
+          var removedEdges = new ArrayList<EdgeKey>();
+          for (var edge : delta.removedEdges()) {
+            var key = new EdgeKey(edge.source().getId(), edge.target().getId(), edge.type());
+            if (edges.remove(key)) {
+              removedEdges.add(key);
+              var links = outgoing.get(key.source());
+              if (links != null) {
+                links.remove(key);
+              }
+            }
+          }
+          for (var asset : delta.addedVertices()) {
+            assets.put(asset.getId(), asset);
+          }
+          for (var asset : delta.updatedVertices()) {
+            if (assets.containsKey(asset.getId())) {
+              assets.put(asset.getId(), asset);
+            }
+          }
+          var addedEdges = new ArrayList<EdgeKey>();
+          for (var edge : delta.addedEdges()) {
+            var key = new EdgeKey(edge.source().getId(), edge.target().getId(), edge.type());
+            if (removedIds.contains(key.source()) || removedIds.contains(key.target())) {
+              continue;
+            }
+            assets.putIfAbsent(edge.source().getId(), edge.source());
+            assets.putIfAbsent(edge.target().getId(), edge.target());
+            if (edges.add(key)) {
+              outgoing.computeIfAbsent(key.source(), id -> new ArrayList<>()).add(key);
+              addedEdges.add(key);
+            }
+          }
+
+          if (delta.snapshot()) {
+            refocus();
+            return;
+          }
+
+          for (long id : removedIds) {
+            if (levels.remove(id) != null) {
+              removeVertexSlot(id);
+            }
+          }
+          for (var key : removedEdges) {
+            var slot = edgeIndex.remove(key);
+            if (slot != null) {
+              removeEdgeSlot(slot);
+            }
+          }
+          if (!removedIds.isEmpty()) {
+            // relationships of removed assets may not be listed in the delta
+            for (var iterator = edgeIndex.entrySet().iterator(); iterator.hasNext(); ) {
+              var entry = iterator.next();
+              if (removedIds.contains(entry.getKey().source())
+                  || removedIds.contains(entry.getKey().target())) {
+                removeEdgeSlot(entry.getValue());
+                iterator.remove();
+              }
+            }
+          }
+          for (var asset : delta.updatedVertices()) {
+            var slot = index.get(asset.getId());
+            if (slot != null) {
+              vertices[slot] = asset;
+              labels[slot] = null;
+              setStyle(slot, VertexStyle.of(asset));
+            }
+          }
+          var frontier = new ArrayDeque<Long>();
+          if (!levels.containsKey(focusId) && assets.containsKey(focusId)) {
+            show(assets.get(focusId), 0, frontier);
+          }
+          for (var key : addedEdges) {
+            link(key, frontier);
+          }
+          expand(frontier);
+
+          if (vertexCount - index.size() > Math.max(MIN_DEAD_SLOTS, index.size())) {
+            rebuild();
+          } else {
+            amendLayout();
+          }
+        });
+  }
+
+  /** Show the neighbourhood of another focal asset, as soon as it is in the graph. */
+  private void setFocus(RuntimeAsset asset) {
+    if (asset.getId() != focusId || !levels.containsKey(focusId)) {
+      focusId = asset.getId();
+      refocus();
+    }
+  }
+
+  /** Extract the neighbourhood of the focal asset from scratch and restart the layout. */
+  private void refocus() {
+    levels.clear();
+    var frontier = new ArrayDeque<Long>();
+    var focus = assets.get(focusId);
+    if (focus != null) {
+      levels.put(focusId, 0);
+      frontier.add(focusId);
+      expand(frontier);
+    }
+    rebuild();
+  }
+
+  /**
+   * Add the asset to the neighbourhood at the passed distance from the focus, unless it is there
+   * already or the neighbourhood is full.
+   *
+   * @return true if the asset is in the neighbourhood
+   */
+  private boolean show(RuntimeAsset asset, int level, ArrayDeque<Long> frontier) {
+    if (levels.containsKey(asset.getId())) {
+      return true;
+    }
+    if (levels.size() >= MAX_ASSETS) {
+      return false;
+    }
+    levels.put(asset.getId(), level);
+    addVertexSlot(asset);
+    frontier.add(asset.getId());
+    return true;
+  }
+
+  /** Show the relationship if its source is in the neighbourhood and may be followed. */
+  private void link(EdgeKey key, ArrayDeque<Long> frontier) {
+    var level = levels.get(key.source());
+    if (level == null || level >= depth || !relationships.contains(key.type())) {
+      return;
+    }
+    var target = assets.get(key.target());
+    if (target != null && show(target, level + 1, frontier) && !edgeIndex.containsKey(key)) {
+      addEdgeSlot(key);
+    }
+  }
+
+  /** Breadth-first extension of the neighbourhood from the assets in the frontier. */
+  private void expand(ArrayDeque<Long> frontier) {
+    while (!frontier.isEmpty()) {
+      for (var key : outgoing.getOrDefault(frontier.poll(), List.of())) {
+        link(key, frontier);
+      }
+    }
+  }
+
+  private void addVertexSlot(RuntimeAsset asset) {
+    if (vertexCount == vertices.length) {
+      int capacity = Math.max(16, vertices.length * 2);
+      vertices = Arrays.copyOf(vertices, capacity);
+      styles = Arrays.copyOf(styles, capacity);
+      labels = Arrays.copyOf(labels, capacity);
+    }
+    int slot = vertexCount++;
+    vertices[slot] = asset;
+    labels[slot] = null;
+    index.put(asset.getId(), slot);
+    setStyle(slot, VertexStyle.of(asset));
+  }
+
+  private void setStyle(int slot, VertexStyle style) {
+    if (styles[slot] == style) {
+      return;
+    }
+    styles[slot] = style;
+    int k = style.ordinal();
+    if (styleCounts[k] == verticesByStyle[k].length) {
+      verticesByStyle[k] = Arrays.copyOf(verticesByStyle[k], Math.max(16, styleCounts[k] * 2));
+    }
+    verticesByStyle[k][styleCounts[k]++] = slot;
+  }
+
+  private void removeVertexSlot(long id) {
+    var slot = index.remove(id);
+    if (slot != null) {
+      vertices[slot] = null;
+      labels[slot] = null;
+      if (hovered == slot) {
+        hovered = -1;
+      }
+      removedVertexSlots.add(slot);
+      gridValid = false;
+      requestPaint();
+    }
+  }
+
+  private void addEdgeSlot(EdgeKey key) {
+    if (edgeCount == edgeSources.length) {
+      int capacity = Math.max(16, edgeSources.length * 2);
+      edgeSources = Arrays.copyOf(edgeSources, capacity);
+      edgeTargets = Arrays.copyOf(edgeTargets, capacity);
+    }
+    edgeSources[edgeCount] = index.get(key.source());
+    edgeTargets[edgeCount] = index.get(key.target());
+    edgeIndex.put(key, edgeCount++);
+  }
+
+  private void removeEdgeSlot(int slot) {
+    edgeSources[slot] = -1;
+    edgeTargets[slot] = -1;
+    removedEdgeSlots.add(slot);
+    requestPaint();
+  }
+
+  /** Pass the slots added and removed since the last call to the layout, which stays warm. */
+  private void amendLayout() {
+    if (firstNewVertex == vertexCount
+        && firstNewEdge == edgeCount
+        && removedVertexSlots.isEmpty()
+        && removedEdgeSlots.isEmpty()) {
+      return;
+    }
+    int added = vertexCount - firstNewVertex;
+    long[] ids = new long[added];
+    double[] newX = new double[added];
+    double[] newY = new double[added];
+    Arrays.fill(newX, Double.NaN);
+    Arrays.fill(newY, Double.NaN);
+    for (int i = 0; i < added; i++) {
+      // removed before being laid out: the slot stays, but inactive
+      ids[i] = vertices[firstNewVertex + i] == null ? 0 : vertices[firstNewVertex + i].getId();
+    }
+    // new vertices go where they were last time this digital twin was seen
+    KlabIDEController.instance().getLayoutStore().seed(scope.getId(), ids, newX, newY);
+
+    // show them right away where they are known to go
+    int known = x.length;
+    x = Arrays.copyOf(x, vertexCount);
+    y = Arrays.copyOf(y, vertexCount);
+    Arrays.fill(x, known, vertexCount, Double.NaN);
+    Arrays.fill(y, known, vertexCount, Double.NaN);
+    System.arraycopy(newX, 0, x, firstNewVertex, added);
+    System.arraycopy(newY, 0, y, firstNewVertex, added);
+
+    layout.amend(
+        newX,
+        newY,
+        removedVertexSlots.stream().mapToInt(Integer::intValue).toArray(),
+        Arrays.copyOfRange(edgeSources, firstNewEdge, edgeCount),
+        Arrays.copyOfRange(edgeTargets, firstNewEdge, edgeCount),
+        removedEdgeSlots.stream().mapToInt(Integer::intValue).toArray());
+    firstNewVertex = vertexCount;
+    firstNewEdge = edgeCount;
+    removedVertexSlots.clear();
+    removedEdgeSlots.clear();
+    gridValid = false;
+    requestPaint();
+  }
+
+  /**
+   * Rebuild the slots for the shown neighbourhood without gaps, carrying the current positions over
+   * by id, and restart the layout. Only used when the focus changes or removed slots pile up.
+   */
+  private void rebuild() {
+    int known = Math.min(vertexCount, x.length);
+    var oldIndex = new HashMap<>(index);
+    double[] oldX = x;
+    double[] oldY = y;
+
+    index.clear();
+    edgeIndex.clear();
+    vertexCount = 0;
+    edgeCount = 0;
+    // no stale slots past the count, which the layout and the painting must never see
+    Arrays.fill(edgeSources, -1);
+    Arrays.fill(edgeTargets, -1);
+    Arrays.fill(styles, null);
+    Arrays.fill(styleCounts, 0);
+    double[] newX = new double[levels.size()];
+    double[] newY = new double[levels.size()];
+    x = new double[0];
+    y = new double[0];
+    for (long id : levels.keySet()) {
+      var old = oldIndex.get(id);
+      newX[vertexCount] = old != null && old < known ? oldX[old] : Double.NaN;
+      newY[vertexCount] = old != null && old < known ? oldY[old] : Double.NaN;
+      addVertexSlot(assets.get(id));
+    }
+    Arrays.fill(vertices, vertexCount, vertices.length, null);
+    for (long id : levels.keySet()) {
+      if (levels.get(id) < depth) {
+        for (var key : outgoing.getOrDefault(id, List.of())) {
+          if (relationships.contains(key.type()) && index.containsKey(key.target())) {
+            addEdgeSlot(key);
+          }
+        }
+      }
+    }
+
+    long[] ids = new long[vertexCount];
+    for (int v = 0; v < vertexCount; v++) {
+      ids[v] = vertices[v].getId();
+    }
+    KlabIDEController.instance().getLayoutStore().seed(scope.getId(), ids, newX, newY);
+
+    firstNewVertex = vertexCount;
+    firstNewEdge = edgeCount;
+    removedVertexSlots.clear();
+    removedEdgeSlots.clear();
+    hovered = -1;
+    gridValid = false;
+    requestPaint();
+
+    layoutGeneration =
+        layout.setGraph(
+            vertexCount,
+            Arrays.copyOf(edgeSources, edgeCount),
+            Arrays.copyOf(edgeTargets, edgeCount),
+            newX,
+            newY,
+            Math.max(canvas.getWidth(), 400),
+            Math.max(canvas.getHeight(), 400));
+    // keep the old positions until the layout has placed the new vertices
+    x = newX;
+    y = newY;
+  }
+
+  /** Paint on the next frame, e.g. because the view transform or the shown graph changed. */
+  private void requestPaint() {
+    dirty = true;
+    wakeFrameTimer();
+  }
+
+  /** Restart the frame timer after it stopped because nothing was moving. */
+  private void wakeFrameTimer() {
+    if (!frameTimerRunning && !closed) {
+      frameTimerRunning = true;
+      frameTimer.start();
+    }
+  }
+
+  /** True if the layout will not publish new positions until the graph changes. */
+  private boolean isLayoutIdle() {
+    // checked first, so that an amendment is not missed between the two
+    if (layout.hasPendingChanges()) {
+      return false;
+    }
+    var positions = layout.getPositions();
+    return positions.generation() == layoutGeneration
+        && positions.settled()
+        && positions.version() == appliedLayoutVersion;
+  }
+
+  private void applyLayout() {
+    var positions = layout.getPositions();
+    if (positions.generation() != layoutGeneration
+        || positions.version() == appliedLayoutVersion) {
+      return;
+    }
+    appliedLayoutVersion = positions.version();
+    x = positions.x();
+    y = positions.y();
+    gridValid = false;
+    requestPaint();
+    if (positions.settled()) {
+      int n = Math.min(vertexCount, x.length);
+      int live = 0;
+      long[] ids = new long[n];
+      double[] savedX = new double[n];
+      double[] savedY = new double[n];
+      for (int i = 0; i < n; i++) {
+        if (vertices[i] != null) {
+          ids[live] = vertices[i].getId();
+          savedX[live] = x[i];
+          savedY[live++] = y[i];
+        }
+      }
+      KlabIDEController.instance()
+          .getLayoutStore()
+          .save(
+              scope.getId(),
+              Arrays.copyOf(ids, live),
+              Arrays.copyOf(savedX, live),
+              Arrays.copyOf(savedY, live));
+    }
+    if (pendingFocus != null) {
+      var focus = pendingFocus;
+      pendingFocus = null;
+      center(focus);
+    }
+  }
+
+  private void paint() {
+    var gc = canvas.getGraphicsContext2D();
+    double width = canvas.getWidth();
+    double height = canvas.getHeight();
+    gc.setFill(BACKGROUND);
+    gc.fillRect(0, 0, width, height);
+
+    int n = Math.min(vertexCount, x.length);
+    if (n == 0) {
+      return;
+    }
+
+    // viewport in world coordinates, with a margin for the vertex size
+    double margin = MAX_VERTEX_RADIUS;
+    double minX = -offsetX / scale - margin;
+    double minY = -offsetY / scale - margin;
+    double maxX = (width - offsetX) / scale + margin;
+    double maxY = (height - offsetY) / scale + margin;
+
+    int visible = 0;
+    for (int i = 0; i < n && visible <= PLOT_MIN_VERTICES; i++) {
+      if (vertices[i] != null && x[i] >= minX && x[i] <= maxX && y[i] >= minY && y[i] <= maxY) {
+        visible++;
+      }
+    }
+
+    if (MAX_VERTEX_RADIUS * scale < PLOT_MAX_RADIUS || visible > PLOT_MIN_VERTICES) {
+      plot(gc, n, width, height);
+    } else {
+      // all edges in one path
+      gc.setStroke(EDGE_COLOR);
+      gc.setLineWidth(Math.max(0.5, Math.min(2, scale)));
+      gc.beginPath();
+      for (int e = 0; e < edgeCount; e++) {
+        int s = edgeSources[e];
+        int t = edgeTargets[e];
+        if (s < 0 || s >= n || t >= n || Double.isNaN(x[s]) || Double.isNaN(x[t])) {
+          continue;
+        }
+        if (Math.max(x[s], x[t]) < minX
+            || Math.min(x[s], x[t]) > maxX
+            || Math.max(y[s], y[t]) < minY
+            || Math.min(y[s], y[t]) > maxY) {
+          continue;
+        }
+        gc.moveTo(x[s] * scale + offsetX, y[s] * scale + offsetY);
+        gc.lineTo(x[t] * scale + offsetX, y[t] * scale + offsetY);
+      }
+      gc.stroke();
+
+      // vertices grouped by style to minimize state changes
+      for (var style : VertexStyle.values()) {
+        double radius = style.radius * scale;
+        gc.setFill(style.fill);
+        gc.setStroke(style.stroke);
+        gc.setLineWidth(style.strokeWidth);
+        int[] slots = verticesByStyle[style.ordinal()];
+        for (int k = 0; k < styleCounts[style.ordinal()]; k++) {
+          int i = slots[k];
+          if (i >= n
+              || vertices[i] == null
+              || styles[i] != style
+              || Double.isNaN(x[i])
+              || x[i] < minX
+              || x[i] > maxX
+              || y[i] < minY
+              || y[i] > maxY) {
+            continue;
+          }
+          double sx = x[i] * scale + offsetX;
+          double sy = y[i] * scale + offsetY;
+          gc.fillOval(sx - radius, sy - radius, radius * 2, radius * 2);
+          gc.strokeOval(sx - radius, sy - radius, radius * 2, radius * 2);
+        }
+      }
+    }
+
+    if (hovered >= 0 && hovered < n) {
+      double radius = styles[hovered].radius * scale;
+      gc.setStroke(styles[hovered].stroke);
+      gc.setLineWidth(3);
+      gc.strokeOval(
+          x[hovered] * scale + offsetX - radius,
+          y[hovered] * scale + offsetY - radius,
+          radius * 2,
+          radius * 2);
+    }
+
+    if (MAX_VERTEX_RADIUS * scale >= LABEL_MIN_RADIUS) {
+      gc.setFill(LABEL_COLOR);
+      for (int i = 0; i < n; i++) {
+        if (vertices[i] == null
+            || Double.isNaN(x[i])
+            || x[i] < minX
+            || x[i] > maxX
+            || y[i] < minY
+            || y[i] > maxY) {
+          continue;
+        }
+        gc.fillText(
+            label(i),
+            x[i] * scale + offsetX + styles[i].radius * scale + 2,
+            y[i] * scale + offsetY + 4);
+      }
+    }
+  }
+
+  /**
+   * Paint edges and vertices as pixels into an image the size of the canvas and draw that. When
+   * zoomed out or crowded, setting the pixels of tens of thousands of small shapes directly is an
+   * order of magnitude cheaper than rasterizing them as antialiased paths.
+   */
+  private void plot(GraphicsContext gc, int n, double width, double height) {
+    int w = (int) Math.ceil(width);
+    int h = (int) Math.ceil(height);
+    if (w == 0 || h == 0) {
+      return;
+    }
+    if (plot == null || plot.getWidth() != w || plot.getHeight() != h) {
+      plot = new WritableImage(w, h);
+      plotPixels = new int[w * h];
+    }
+    Arrays.fill(plotPixels, PLOT_BACKGROUND);
+
+    for (int e = 0; e < edgeCount; e++) {
+      int s = edgeSources[e];
+      int t = edgeTargets[e];
+      if (s < 0 || s >= n || t >= n || Double.isNaN(x[s]) || Double.isNaN(x[t])) {
+        continue;
+      }
+      plotLine(
+          x[s] * scale + offsetX,
+          y[s] * scale + offsetY,
+          x[t] * scale + offsetX,
+          y[t] * scale + offsetY,
+          w,
+          h);
+    }
+
+    for (var style : VertexStyle.values()) {
+      int stroke = argb(style.stroke);
+      int fill = argb(style.fill);
+      int radius = Math.max(1, (int) Math.round(style.radius * scale));
+      // small vertices are a disc of the stroke color, larger ones filled inside their outline
+      int inner = radius >= 3 ? radius - (int) Math.ceil(style.strokeWidth) : -1;
+      int[] outerSpans = discSpans(radius);
+      int[] innerSpans = discSpans(inner);
+      int[] slots = verticesByStyle[style.ordinal()];
+      for (int k = 0; k < styleCounts[style.ordinal()]; k++) {
+        int i = slots[k];
+        if (i >= n || vertices[i] == null || styles[i] != style || Double.isNaN(x[i])) {
+          continue;
+        }
+        int cx = (int) Math.floor(x[i] * scale + offsetX);
+        int cy = (int) Math.floor(y[i] * scale + offsetY);
+        if (cx + radius < 0 || cy + radius < 0 || cx - radius >= w || cy - radius >= h) {
+          continue;
+        }
+        plotDisc(cx, cy, outerSpans, stroke, w, h);
+        plotDisc(cx, cy, innerSpans, fill, w, h);
+      }
+    }
+
+    plot.getPixelWriter()
+        .setPixels(0, 0, w, h, PixelFormat.getIntArgbPreInstance(), plotPixels, 0, w);
+    gc.drawImage(plot, 0, 0);
+  }
+
+  /** Half widths of the rows of a disc, from top to bottom; empty for a negative radius. */
+  private static int[] discSpans(int radius) {
+    if (radius < 0) {
+      return new int[0];
+    }
+    int[] ret = new int[2 * radius + 1];
+    for (int dy = -radius; dy <= radius; dy++) {
+      ret[dy + radius] = (int) Math.sqrt((radius + 0.5) * (radius + 0.5) - dy * dy);
+    }
+    return ret;
+  }
+
+  private void plotDisc(int cx, int cy, int[] spans, int color, int w, int h) {
+    int radius = spans.length / 2;
+    for (int r = 0; r < spans.length; r++) {
+      int row = cy - radius + r;
+      if (row < 0 || row >= h) {
+        continue;
+      }
+      int from = Math.max(0, cx - spans[r]);
+      int to = Math.min(w, cx + spans[r] + 1);
+      if (from < to) {
+        Arrays.fill(plotPixels, row * w + from, row * w + to, color);
+      }
+    }
+  }
+
+  /** Bresenham line in the plot, clipped to it first so that its length is bounded. */
+  private void plotLine(double x0, double y0, double x1, double y1, int w, int h) {
+    // Liang-Barsky clipping to the buffer
+    double t0 = 0;
+    double t1 = 1;
+    double dx = x1 - x0;
+    double dy = y1 - y0;
+    double[] p = {-dx, dx, -dy, dy};
+    double[] q = {x0, w - 1 - x0, y0, h - 1 - y0};
+    for (int k = 0; k < 4; k++) {
+      if (p[k] == 0) {
+        if (q[k] < 0) {
+          return;
+        }
+      } else {
+        double r = q[k] / p[k];
+        if (p[k] < 0) {
+          t0 = Math.max(t0, r);
+        } else {
+          t1 = Math.min(t1, r);
+        }
+      }
+    }
+    if (t0 > t1) {
+      return;
+    }
+    int ax = (int) (x0 + t0 * dx);
+    int ay = (int) (y0 + t0 * dy);
+    int bx = (int) (x0 + t1 * dx);
+    int by = (int) (y0 + t1 * dy);
+    int stepX = ax < bx ? 1 : -1;
+    int stepY = ay < by ? 1 : -1;
+    int distanceX = Math.abs(bx - ax);
+    int distanceY = -Math.abs(by - ay);
+    int error = distanceX + distanceY;
+    while (true) {
+      plotPixels[ay * w + ax] = PLOT_EDGE_COLOR;
+      if (ax == bx && ay == by) {
+        return;
+      }
+      int doubled = 2 * error;
+      if (doubled >= distanceY) {
+        error += distanceY;
+        ax += stepX;
+      }
+      if (doubled <= distanceX) {
+        error += distanceX;
+        ay += stepY;
+      }
+    }
+  }
+
+  private static int argb(Color color) {
+    return 0xFF000000
+        | (int) Math.round(color.getRed() * 255) << 16
+        | (int) Math.round(color.getGreen() * 255) << 8
+        | (int) Math.round(color.getBlue() * 255);
+  }
+
+  private String label(int i) {
+    if (labels[i] == null) {
+      labels[i] = Theme.getLabel(vertices[i]);
+    }
+    return labels[i];
+  }
+
+  /** Index of the vertex under the screen point, or -1. */
+  private int hitTest(double screenX, double screenY) {
+    int n = Math.min(vertexCount, x.length);
+    if (n == 0) {
+      return -1;
+    }
+    if (!gridValid) {
+      buildGrid(n);
+    }
+    double wx = (screenX - offsetX) / scale;
+    double wy = (screenY - offsetY) / scale;
+    int column = (int) Math.floor((wx - gridMinX) / gridCellSize);
+    int row = (int) Math.floor((wy - gridMinY) / gridCellSize);
+    int ret = -1;
+    double best = Double.MAX_VALUE;
+    for (int r = row - 1; r <= row + 1; r++) {
+      for (int c = column - 1; c <= column + 1; c++) {
+        if (r < 0 || c < 0 || r >= gridRows || c >= gridColumns) {
+          continue;
+        }
+        int cell = r * gridColumns + c;
+        for (int k = gridStart[cell]; k < gridStart[cell + 1]; k++) {
+          int i = gridItems[k];
+          double dx = x[i] - wx;
+          double dy = y[i] - wy;
+          double d2 = dx * dx + dy * dy;
+          double radius = styles[i].radius;
+          if (d2 <= radius * radius && d2 < best) {
+            best = d2;
+            ret = i;
+          }
+        }
+      }
+    }
+    return ret;
+  }
+
+  /** Counting sort of the vertices into grid cells the size of the largest vertex. */
+  private void buildGrid(int n) {
+    double minX = Double.POSITIVE_INFINITY;
+    double minY = Double.POSITIVE_INFINITY;
+    double maxX = Double.NEGATIVE_INFINITY;
+    double maxY = Double.NEGATIVE_INFINITY;
+    for (int i = 0; i < n; i++) {
+      if (vertices[i] != null && !Double.isNaN(x[i])) {
+        minX = Math.min(minX, x[i]);
+        minY = Math.min(minY, y[i]);
+        maxX = Math.max(maxX, x[i]);
+        maxY = Math.max(maxY, y[i]);
+      }
+    }
+    if (minX > maxX) {
+      minX = minY = maxX = maxY = 0;
+    }
+    gridCellSize = 2 * MAX_VERTEX_RADIUS;
+    // keep the number of cells proportional to the number of vertices
+    while ((maxX - minX) / gridCellSize * (maxY - minY) / gridCellSize > 4.0 * n) {
+      gridCellSize *= 2;
+    }
+    gridMinX = minX;
+    gridMinY = minY;
+    gridColumns = (int) ((maxX - minX) / gridCellSize) + 1;
+    gridRows = (int) ((maxY - minY) / gridCellSize) + 1;
+
+    int[] cells = new int[n];
+    gridStart = new int[gridColumns * gridRows + 1];
+    for (int i = 0; i < n; i++) {
+      if (vertices[i] == null || Double.isNaN(x[i])) {
+        cells[i] = -1;
+        continue;
+      }
+      int column = (int) ((x[i] - minX) / gridCellSize);
+      int row = (int) ((y[i] - minY) / gridCellSize);
+      cells[i] = row * gridColumns + column;
+      gridStart[cells[i] + 1]++;
+    }
+    for (int c = 0; c < gridColumns * gridRows; c++) {
+      gridStart[c + 1] += gridStart[c];
+    }
+    int[] fill = Arrays.copyOf(gridStart, gridStart.length - 1);
+    gridItems = new int[n];
+    for (int i = 0; i < n; i++) {
+      if (cells[i] >= 0) {
+        gridItems[fill[cells[i]]++] = i;
+      }
+    }
+    gridValid = true;
+  }
+
+  /** Pan the view so that the asset is in the centre, as soon as it has a position. */
+  public void center(RuntimeAsset asset) {
+    var i = index.get(asset.getId());
+    if (i == null || i >= x.length || Double.isNaN(x[i])) {
+      pendingFocus = asset;
+      return;
+    }
+    offsetX = canvas.getWidth() / 2 - x[i] * scale;
+    offsetY = canvas.getHeight() / 2 - y[i] * scale;
+    requestPaint();
+  }
+
+  @Override
+  public void submissionStarted(Observation observation) {}
+
+  @Override
+  public void submissionAborted(Observation observation) {}
+
+  @Override
+  public void submissionFinished(Observation observation) {
+    Platform.runLater(
+        () -> {
+          setFocus(observation);
+          center(observation);
+        });
+  }
+
+  @Override
+  public void setContext(Observation observation) {}
+
+  @Override
+  public void setObserver(Observation observation) {}
+
+  @Override
+  public void knowledgeGraphModified() {}
+
+  @Override
+  public void scheduleModified(Schedule schedule) {
+    Platform.runLater(
+        () -> {
+          if (!timeline.isVisible()) {
+            timeline.setVisible(true);
+          }
+          timeline.updateEndTime(schedule.getEnd());
+        });
+  }
+
+  @Override
+  public void activitiesModified(ActivityGraph activityGraph) {}
+
+  @Override
+  public void cleanup() {
+    Platform.runLater(
+        () -> {
+          closed = true;
+          frameTimer.stop();
+        });
+    layout.shutdown();
+  }
+}
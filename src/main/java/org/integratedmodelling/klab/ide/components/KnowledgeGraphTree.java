@@ -1,5 +1,11 @@
 package org.integratedmodelling.klab.ide.components;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import javafx.application.Platform;
 import javafx.scene.control.TreeItem;
 import javafx.scene.control.TreeView;
@@ -10,20 +16,45 @@ import org.integratedmodelling.klab.api.digitaltwin.GraphModel;
 import org.integratedmodelling.klab.api.knowledge.observation.Observation;
 import org.integratedmodelling.klab.api.knowledge.observation.scale.time.Schedule;
 import org.integratedmodelling.klab.api.provenance.Activity;
+import org.integratedmodelling.klab.ide.api.ActivityGraph;
 import org.integratedmodelling.klab.ide.api.DigitalTwinViewer;
-import org.jgrapht.Graph;
-import org.jgrapht.graph.DefaultEdge;
+import org.integratedmodelling.klab.ide.api.GraphDelta;
 
+/**
+ * Tree of the {@link GraphModel.Relationship#HAS_CHILD} hierarchy in a knowledge graph, kept up to
+ * date from the deltas sent by the digital twin peer. The hierarchy itself is held as lists of
+ * child assets per parent; {@link LazyTreeItem}s are only made for the children of items that have
+ * been expanded, so a large digital twin costs tree items in proportion to what was looked at.
+ */
 public class KnowledgeGraphTree extends TreeView<RuntimeAsset> implements DigitalTwinViewer {
 
   private TreeItem<RuntimeAsset> previousBoldItem;
+  // child assets by parent id and parent id by child id. Only accessed on the FX thread.
+  private final Map<Long, List<RuntimeAsset>> children = new HashMap<>();
+  private final Map<Long, Long> parents = new HashMap<>();
+  // items made so far, by asset id. Only accessed on the FX thread.
+  private final TreeItemIndex<RuntimeAsset, Long> items = new TreeItemIndex<>(RuntimeAsset::getId);
 
-  public KnowledgeGraphTree() {
-    super();
-  }
+  private final LazyTreeItem.Source<RuntimeAsset> source =
+      new LazyTreeItem.Source<>() {
+
+        @Override
+        public List<? extends RuntimeAsset> children(RuntimeAsset value) {
+          return children.getOrDefault(value.getId(), List.of());
+        }
+
+        @Override
+        public boolean hasChildren(RuntimeAsset value) {
+          var ret = children.get(value.getId());
+          return ret != null && !ret.isEmpty();
+        }
+      };
 
-  public KnowledgeGraphTree(TreeItem<RuntimeAsset> runtimeAssetTreeItem) {
-    super(runtimeAssetTreeItem);
+  public KnowledgeGraphTree(RuntimeAsset rootAsset) {
+    var root = new LazyTreeItem<>(rootAsset, source);
+    root.setSelection(getSelectionModel().selectedItemProperty());
+    items.track(root);
+    setRoot(root);
   }
 
   @Override
@@ -35,11 +66,28 @@ public class KnowledgeGraphTree extends TreeView<RuntimeAsset> implements Digita
   @Override
   public void submissionFinished(Observation observation) {}
 
+  /**
+   * The item showing the asset with the passed id, loading the children of its ancestors if it has
+   * not been made yet, or null if the asset is not in the tree. Must be called on the FX thread.
+   */
+  public TreeItem<RuntimeAsset> getItem(long id) {
+    var ret = items.get(id);
+    if (ret == null) {
+      var parent = parents.get(id);
+      var parentItem = parent == null ? null : getItem(parent);
+      if (parentItem != null) {
+        parentItem.getChildren();
+        ret = items.get(id);
+      }
+    }
+    return ret;
+  }
+
   @Override
   public void setContext(Observation observation) {
-    var item = findTreeItemById(getRoot(), observation.getId());
     Platform.runLater(
         () -> {
+          var item = getItem(observation.getId());
           if (previousBoldItem != null) {
             // Ensure the previous item has a graphic before styling
             ensureGraphicExists(previousBoldItem);
@@ -72,25 +120,132 @@ public class KnowledgeGraphTree extends TreeView<RuntimeAsset> implements Digita
     }
   }
 
-  private TreeItem<RuntimeAsset> findTreeItemById(TreeItem<RuntimeAsset> current, long id) {
-    if (current.getValue() != null && current.getValue().getId() == id) {
-      return current;
-    }
-    for (TreeItem<RuntimeAsset> child : current.getChildren()) {
-      TreeItem<RuntimeAsset> result = findTreeItemById(child, id);
-      if (result != null) {
-        return result;
-      }
-    }
-    return null;
-  }
-
   @Override
   public void setObserver(Observation observation) {}
 
   @Override
   public void knowledgeGraphModified() {}
 
+  /**
+   * Apply the {@link GraphModel.Relationship#HAS_CHILD} changes in the delta to the hierarchy, then
+   * reconcile the children of the loaded items whose children changed, keeping existing items by
+   * asset id so that their expansion and selection survive. Items that were never expanded only
+   * get their leaf status refreshed. A snapshot replaces the hierarchy and reconciles every loaded
+   * item with it.
+   */
+  @Override
+  public void knowledgeGraphChanged(GraphDelta<RuntimeAsset, GraphModel.Relationship> delta) {
+    Platform.runLater(
+        () -> {
+          Set<Long> changed = new HashSet<>();
+          if (delta.snapshot()) {
+            children.clear();
+            parents.clear();
+          }
+          for (var edge : delta.removedEdges()) {
+            if (edge.type() == GraphModel.Relationship.HAS_CHILD) {
+              removeChild(edge.source().getId(), edge.target().getId(), changed);
+            }
+          }
+          for (var asset : delta.removedVertices()) {
+            var parent = parents.get(asset.getId());
+            if (parent != null) {
+              removeChild(parent, asset.getId(), changed);
+            }
+            var orphans = children.remove(asset.getId());
+            if (orphans != null) {
+              for (var orphan : orphans) {
+                parents.remove(orphan.getId(), asset.getId());
+              }
+            }
+          }
+          for (var asset : delta.updatedVertices()) {
+            var parent = parents.get(asset.getId());
+            if (parent != null) {
+              var siblings = children.get(parent);
+              for (int i = 0; i < siblings.size(); i++) {
+                if (siblings.get(i).getId() == asset.getId()) {
+                  siblings.set(i, asset);
+                }
+              }
+            }
+            var item = items.get(asset.getId());
+            if (item != null) {
+              item.setValue(asset);
+            }
+          }
+          for (var edge : delta.addedEdges()) {
+            if (edge.type() == GraphModel.Relationship.HAS_CHILD) {
+              var child = edge.target();
+              var previous = parents.put(child.getId(), edge.source().getId());
+              if (previous != null) {
+                removeChild(previous, child.getId(), changed);
+                parents.put(child.getId(), edge.source().getId());
+              }
+              children.computeIfAbsent(edge.source().getId(), id -> new ArrayList<>()).add(child);
+              changed.add(edge.source().getId());
+            }
+          }
+
+          if (delta.snapshot()) {
+            refresh((LazyTreeItem<RuntimeAsset>) getRoot(), true);
+          } else {
+            for (var id : changed) {
+              if (items.get(id) instanceof LazyTreeItem<RuntimeAsset> item) {
+                refresh(item, false);
+              }
+            }
+          }
+        });
+  }
+
+  private void removeChild(long parent, long child, Set<Long> changed) {
+    var siblings = children.get(parent);
+    if (siblings != null && siblings.removeIf(asset -> asset.getId() == child)) {
+      changed.add(parent);
+      if (siblings.isEmpty()) {
+        children.remove(parent);
+      }
+    }
+    parents.remove(child, parent);
+  }
+
+  private void refresh(LazyTreeItem<RuntimeAsset> item, boolean recursive) {
+    if (!item.isLoaded()) {
+      item.invalidate();
+      return;
+    }
+    reconcile(item);
+    if (recursive) {
+      for (var child : item.getChildren()) {
+        refresh((LazyTreeItem<RuntimeAsset>) child, true);
+      }
+    }
+  }
+
+  /**
+   * Bring the children of a loaded item in line with the hierarchy, reusing the existing items by
+   * asset id. Only the children that were removed or added are reported as such, so the subtrees of
+   * those that are kept are not indexed again.
+   */
+  private void reconcile(LazyTreeItem<RuntimeAsset> item) {
+    var current = item.getChildren();
+    var existing = new HashMap<Long, TreeItem<RuntimeAsset>>(current.size() * 2);
+    for (var child : current) {
+      existing.put(child.getValue().getId(), child);
+    }
+    var wanted = children.getOrDefault(item.getValue().getId(), List.of());
+    var updated = new ArrayList<TreeItem<RuntimeAsset>>(wanted.size());
+    for (var asset : wanted) {
+      var child = existing.remove(asset.getId());
+      if (child == null) {
+        child = new LazyTreeItem<>(asset, source);
+      }
+      updated.add(child);
+    }
+    TreeChildren.update(current, updated);
+  }
+
   //  @Override
   //  public void activityFinished(Activity activity) {}
   //
@@ -107,5 +262,5 @@ public class KnowledgeGraphTree extends TreeView<RuntimeAsset> implements Digita
   public void cleanup() {}
 
   @Override
-  public void activitiesModified(Graph<Activity, DefaultEdge> activityGraph) {}
+  public void activitiesModified(ActivityGraph activityGraph) {}
 }
@@ -3,14 +3,28 @@ package org.integratedmodelling.klab.ide.components;
 import atlantafx.base.controls.ToggleSwitch;
 import atlantafx.base.theme.Styles;
 import com.brunomnsilva.smartgraph.graph.DigraphEdgeList;
+import com.brunomnsilva.smartgraph.graph.Edge;
 import com.brunomnsilva.smartgraph.graph.Graph;
+import com.brunomnsilva.smartgraph.graph.Vertex;
+import com.brunomnsilva.smartgraph.graphview.SmartGraphEdgeBase;
 import com.brunomnsilva.smartgraph.graphview.SmartGraphPanel;
+import com.brunomnsilva.smartgraph.graphview.SmartLabelledNode;
 import com.brunomnsilva.smartgraph.graphview.SmartRandomPlacementStrategy;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import javafx.animation.AnimationTimer;
 import javafx.application.Platform;
+import javafx.geometry.Bounds;
+import javafx.scene.Node;
 import javafx.scene.control.Button;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.HBox;
@@ -23,8 +37,11 @@ import org.integratedmodelling.klab.api.knowledge.observation.scale.time.Schedul
 import org.integratedmodelling.klab.api.provenance.Activity;
 import org.integratedmodelling.klab.api.scope.ContextScope;
 import org.integratedmodelling.klab.ide.KlabIDEController;
+import org.integratedmodelling.klab.ide.api.ActivityGraph;
 import org.integratedmodelling.klab.ide.api.DigitalTwinViewer;
-import org.jgrapht.graph.DefaultEdge;
+import org.integratedmodelling.klab.ide.api.GraphDelta;
+import org.integratedmodelling.klab.ide.model.ForceLayout;
+import org.integratedmodelling.klab.ide.model.Neighbourhood;
 import org.kordamp.ikonli.javafx.FontIcon;
 import org.kordamp.ikonli.material2.Material2AL;
 import org.kordamp.ikonli.material2.Material2MZ;
@@ -36,9 +53,9 @@ public class KnowledgeGraphView extends BorderPane implements DigitalTwinViewer
   private final DigitalTwinEditor editor;
   private boolean autoLayout = true;
   private SmartGraphPanel<RuntimeAsset, ClientKnowledgeGraph.Relationship> graphView;
-  private int depth = 3;
+  private int depth = Neighbourhood.DEFAULT_DEPTH;
   private Set<GraphModel.Relationship> relationships =
-      EnumSet.of(GraphModel.Relationship.HAS_CHILD);
+      EnumSet.copyOf(Neighbourhood.DEFAULT_RELATIONSHIPS);
   private RuntimeAsset focalAsset = null;
   private volatile boolean initialized = false;
   private volatile boolean graphViewReady = false;
@@ -46,6 +63,45 @@ public class KnowledgeGraphView extends BorderPane implements DigitalTwinViewer
   // Queue to store pending updates until the graph is ready
   private RuntimeAsset pendingFocalAsset = null;
 
+  private record EdgeKey(long source, long target, GraphModel.Relationship type) {}
+
+  private static final int ASSET_CACHE_SIZE = 4096;
+  // vertices actually shown; anything beyond is collapsed into aggregates
+  private static final int MAX_VISIBLE_VERTICES = 300;
+  // same-kind assets linked from one source are collapsed when at least this many
+  private static final int AGGREGATE_THRESHOLD = 10;
+  private static final long CULLING_INTERVAL_NS = 250_000_000L;
+  private static final int LAYOUT_FRAMES_PER_SECOND = 30;
+
+  // what is currently displayed, indexed by asset id. Only accessed on the FX thread.
+  private final Map<Long, Vertex<RuntimeAsset>> displayedVertices = new HashMap<>();
+  // distance of each displayed vertex from the focal asset
+  private final Map<Long, Integer> displayedLevels = new HashMap<>();
+  private final Map<EdgeKey, Edge<ClientKnowledgeGraph.Relationship, RuntimeAsset>>
+      displayedEdges = new HashMap<>();
+  // collapsed groups currently displayed, and the ones the user has expanded
+  private final Map<AggregateAsset.Key, Vertex<RuntimeAsset>> displayedAggregates =
+      new HashMap<>();
+  private final Set<AggregateAsset.Key> expandedAggregates = new HashSet<>();
+  // runs only while the layout moves vertices or a cull is pending
+  private AnimationTimer frameTimer;
+  private boolean frameTimerRunning;
+  private boolean cullPending;
+  // positions are computed off the FX thread and applied by the frame timer
+  private ForceLayout layout;
+  private List<Vertex<RuntimeAsset>> layoutVertices = List.of();
+  private long layoutGeneration;
+  private long appliedLayoutVersion;
+  private long savedLayoutGeneration;
+  // wrappers are reused across focus changes so that returning vertices keep their identity
+  private final Map<Long, Asset> assetCache =
+      new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Asset> eldest) {
+          return size() > ASSET_CACHE_SIZE;
+        }
+      };
+
   public KnowledgeGraphView(
       ContextScope scope, ClientKnowledgeGraph knowledgeGraph, DigitalTwinEditor editor) {
 
@@ -114,11 +170,13 @@ public class KnowledgeGraphView extends BorderPane implements DigitalTwinViewer
         });
     redrawButton.setOnAction(
         event -> {
-          if (depth < 5) {
-            depth++;
-            if (isGraphViewReady() && focalAsset != null) {
-              autoLayout = !autoLayout;
-              graphView.setAutomaticLayout(autoLayout);
+          if (layout != null) {
+            autoLayout = !autoLayout;
+            if (autoLayout) {
+              layout.resume();
+              wakeFrameTimer();
+            } else {
+              layout.pause();
             }
           }
         });
@@ -154,11 +212,26 @@ public class KnowledgeGraphView extends BorderPane implements DigitalTwinViewer
       var graph = new DigraphEdgeList<RuntimeAsset, ClientKnowledgeGraph.Relationship>();
       this.graphView = new SmartGraphPanel<>(graph, initialPlacement);
       this.setCenter(this.graphView);
-      this.graphView.setAutomaticLayout(true);
+      // SmartGraph's own layout runs on the FX thread; ours doesn't
+      this.graphView.setAutomaticLayout(false);
+      // what is visible changes when the view is resized, panned or zoomed
+      this.graphView.layoutBoundsProperty().addListener((o, old, val) -> requestCull());
+      this.graphView.translateXProperty().addListener((o, old, val) -> requestCull());
+      this.graphView.translateYProperty().addListener((o, old, val) -> requestCull());
+      this.graphView.scaleXProperty().addListener((o, old, val) -> requestCull());
+      this.graphView.scaleYProperty().addListener((o, old, val) -> requestCull());
+      this.layout = new ForceLayout("kg-layout-" + scope.getId(), LAYOUT_FRAMES_PER_SECOND);
 
       graphView.setVertexDoubleClickAction(
           graphVertex -> {
             var asset = graphVertex.getUnderlyingVertex().element();
+            if (asset instanceof AggregateAsset aggregate) {
+              expandedAggregates.add(aggregate.getKey());
+              if (focalAsset != null) {
+                updateGraph(graphView.getModel(), focalAsset);
+              }
+              return;
+            }
             if (asset instanceof Asset wrapper) {
               asset = wrapper.getDelegate();
             }
@@ -190,6 +263,7 @@ public class KnowledgeGraphView extends BorderPane implements DigitalTwinViewer
                 graphView.init();
                 this.initialized = true;
                 this.graphViewReady = true;
+                startFrameTimer();
 
                 // Process any pending focal asset update
                 if (pendingFocalAsset != null) {
@@ -217,6 +291,7 @@ public class KnowledgeGraphView extends BorderPane implements DigitalTwinViewer
                         graphView.init();
                         this.initialized = true;
                         this.setGraphViewReady(true);
+                        startFrameTimer();
 
                         // Process any pending focal asset update
                         if (pendingFocalAsset != null) {
@@ -254,7 +329,6 @@ public class KnowledgeGraphView extends BorderPane implements DigitalTwinViewer
       try {
         knowledgeGraph.focusAsset(asset, depth);
         updateGraph(graphView.getModel(), asset);
-        graphView.update();
       } catch (IllegalStateException e) {
         Logging.INSTANCE.warn(
             "Graph update failed, graph view may not be ready: " + e.getMessage());
@@ -273,32 +347,287 @@ public class KnowledgeGraphView extends BorderPane implements DigitalTwinViewer
         graphView.getModel().removeVertex(vertex);
       }
     }
+    displayedVertices.clear();
+    displayedLevels.clear();
+    displayedEdges.clear();
+    displayedAggregates.clear();
+    expandedAggregates.clear();
+    layoutVertices = List.of();
   }
 
-  private void fillGraph(
-      Graph<RuntimeAsset, ClientKnowledgeGraph.Relationship> graph,
-      Asset asset,
-      int depth,
-      Set<Asset> cache) {
+  private void startFrameTimer() {
+    if (frameTimer == null) {
+      frameTimer =
+          new AnimationTimer() {
+            private long lastCulled;
 
-    for (GraphModel.Relationship relationship : relationships) {
-      for (var targetEdge : knowledgeGraph.getGraph().outgoingEdgesOf(asset.getDelegate())) {
-        if (this.relationships.contains(targetEdge.relationship)) {
-          var target = knowledgeGraph.getGraph().getEdgeTarget(targetEdge);
-          var targetAsset = new Asset(target);
-          if (!cache.contains(targetAsset)) {
-            graph.insertVertex(targetAsset);
-            cache.add(targetAsset);
-          }
-          graph.insertEdge(asset, targetAsset, targetEdge);
-          if (depth > 1) {
-            fillGraph(graph, targetAsset, depth - 1, cache);
-          }
+            @Override
+            public void handle(long now) {
+              if (applyLayout()) {
+                cullPending = true;
+              }
+              boolean idle = isLayoutIdle();
+              // cull at a limited rate while the layout moves, and once more when it stops
+              if (cullPending && (idle || now - lastCulled >= CULLING_INTERVAL_NS)) {
+                lastCulled = now;
+                cullPending = false;
+                cullOffscreen();
+              }
+              if (idle && !cullPending) {
+                stop();
+                frameTimerRunning = false;
+              }
+            }
+          };
+      cullPending = true;
+      wakeFrameTimer();
+    }
+  }
+
+  /** Restart the frame timer after it stopped because nothing was moving. */
+  private void wakeFrameTimer() {
+    if (frameTimer != null && !frameTimerRunning) {
+      frameTimerRunning = true;
+      frameTimer.start();
+    }
+  }
+
+  /** Cull again on the next frame, e.g. because the visible area changed. */
+  private void requestCull() {
+    cullPending = true;
+    wakeFrameTimer();
+  }
+
+  /** True if the layout will not publish new positions until the graph changes or it resumes. */
+  private boolean isLayoutIdle() {
+    if (layout == null || layout.isPaused()) {
+      return true;
+    }
+    // checked first, so that a reheat is not missed between the two
+    if (layout.hasPendingChanges()) {
+      return false;
+    }
+    var positions = layout.getPositions();
+    return positions.generation() == layoutGeneration
+        && positions.settled()
+        && positions.version() == appliedLayoutVersion;
+  }
+
+  /**
+   * Hand the displayed graph to the layout engine, starting from the current positions. Vertices
+   * in {@code inserted} have no meaningful position yet and are placed by the layout.
+   */
+  private void relayout(Set<Asset> inserted) {
+    if (layout == null) {
+      return;
+    }
+    var model = graphView.getModel();
+    var vertices = new ArrayList<>(model.vertices());
+    var index = new IdentityHashMap<Vertex<RuntimeAsset>, Integer>(vertices.size() * 2);
+    long[] ids = new long[vertices.size()];
+    double[] x = new double[vertices.size()];
+    double[] y = new double[vertices.size()];
+    for (int i = 0; i < vertices.size(); i++) {
+      var vertex = vertices.get(i);
+      index.put(vertex, i);
+      ids[i] = vertex.element() instanceof AggregateAsset ? -1 : vertex.element().getId();
+      if (inserted.contains(vertex.element())) {
+        x[i] = Double.NaN;
+        y[i] = Double.NaN;
+      } else {
+        x[i] = graphView.getVertexPositionX(vertex);
+        y[i] = graphView.getVertexPositionY(vertex);
+      }
+    }
+    // new vertices go where they were last time this digital twin was seen
+    KlabIDEController.instance().getLayoutStore().seed(scope.getId(), ids, x, y);
+    var edges = model.edges();
+    int[] sources = new int[edges.size()];
+    int[] targets = new int[edges.size()];
+    int e = 0;
+    for (var edge : edges) {
+      sources[e] = index.get(edge.vertices()[0]);
+      targets[e] = index.get(edge.vertices()[1]);
+      e++;
+    }
+    layoutVertices = vertices;
+    layoutGeneration =
+        layout.setGraph(
+            vertices.size(),
+            sources,
+            targets,
+            x,
+            y,
+            graphView.getWidth(),
+            graphView.getHeight());
+    wakeFrameTimer();
+  }
+
+  /**
+   * Move the vertices to the latest positions published by the layout, if any are new.
+   *
+   * @return true if any position was applied
+   */
+  private boolean applyLayout() {
+    if (layout == null || !isGraphViewReady()) {
+      return false;
+    }
+    var positions = layout.getPositions();
+    if (positions.generation() != layoutGeneration
+        || positions.version() == appliedLayoutVersion) {
+      return false;
+    }
+    appliedLayoutVersion = positions.version();
+    for (int i = 0; i < layoutVertices.size(); i++) {
+      graphView.setVertexPosition(layoutVertices.get(i), positions.x()[i], positions.y()[i]);
+    }
+    if (positions.settled() && savedLayoutGeneration != positions.generation()) {
+      savedLayoutGeneration = positions.generation();
+      saveLayout(positions);
+    }
+    return true;
+  }
+
+  private void saveLayout(ForceLayout.Positions positions) {
+    int n = 0;
+    long[] ids = new long[layoutVertices.size()];
+    double[] x = new double[ids.length];
+    double[] y = new double[ids.length];
+    for (int i = 0; i < layoutVertices.size(); i++) {
+      // aggregates have no position of their own to remember
+      if (!(layoutVertices.get(i).element() instanceof AggregateAsset)) {
+        ids[n] = layoutVertices.get(i).element().getId();
+        x[n] = positions.x()[i];
+        y[n] = positions.y()[i];
+        n++;
+      }
+    }
+    KlabIDEController.instance()
+        .getLayoutStore()
+        .save(scope.getId(), Arrays.copyOf(ids, n), Arrays.copyOf(x, n), Arrays.copyOf(y, n));
+  }
+
+  /**
+   * Hide the vertices that fall outside the visible area of the view, along with their labels, and
+   * the edges whose extent does not cross it, along with their labels and arrows, so that the scene
+   * graph only renders what can be seen. Only called when the layout moved vertices or the visible
+   * area changed.
+   */
+  private void cullOffscreen() {
+    if (!isGraphViewReady()) {
+      return;
+    }
+    // the part of the view that is on screen, in the coordinates of the vertex positions
+    Bounds viewport = graphView.sceneToLocal(localToScene(getLayoutBounds()));
+    if (viewport == null) {
+      return;
+    }
+    for (var vertex : graphView.getModel().vertices()) {
+      var node = graphView.getStylableVertex(vertex);
+      if (node instanceof Node vertexNode) {
+        boolean visible = vertexNode.getBoundsInParent().intersects(viewport);
+        setVisible(vertexNode, visible);
+        if (node instanceof SmartLabelledNode labelled) {
+          setVisible(labelled.getAttachedLabel(), visible);
+        }
+      }
+    }
+    for (var edge : graphView.getModel().edges()) {
+      var node = graphView.getStylableEdge(edge);
+      if (node instanceof Node edgeNode) {
+        boolean visible = edgeNode.getBoundsInParent().intersects(viewport);
+        setVisible(edgeNode, visible);
+        if (node instanceof SmartGraphEdgeBase<?, ?> edgeBase) {
+          setVisible(edgeBase.getAttachedLabel(), visible);
+          setVisible(edgeBase.getAttachedArrow(), visible);
         }
       }
     }
   }
 
+  private static void setVisible(Node node, boolean visible) {
+    if (node != null && node.isVisible() != visible) {
+      node.setVisible(visible);
+    }
+  }
+
+  /** Show the current member count of an aggregate whose membership changed. */
+  private void refreshLabel(Vertex<RuntimeAsset> vertex) {
+    if (graphView.getStylableVertex(vertex) instanceof SmartLabelledNode labelled
+        && labelled.getAttachedLabel() != null) {
+      labelled.getAttachedLabel().setText(vertex.element().toString());
+    }
+  }
+
+  /**
+   * Insert the wrapper for an asset unless a vertex with the same id is already displayed, and
+   * record its distance from the focal asset.
+   */
+  private Asset insertAsset(
+      Graph<RuntimeAsset, ClientKnowledgeGraph.Relationship> graph,
+      RuntimeAsset asset,
+      int level,
+      Set<Asset> cache) {
+    var vertex = displayedVertices.get(asset.getId());
+    if (vertex == null) {
+      vertex = graph.insertVertex(wrap(asset));
+      displayedVertices.put(asset.getId(), vertex);
+      displayedLevels.put(asset.getId(), level);
+      cache.add((Asset) vertex.element());
+    } else {
+      displayedLevels.merge(asset.getId(), level, Math::min);
+    }
+    var ret = (Asset) vertex.element();
+    if (ret.getDelegate() != asset) {
+      ret.setDelegate(asset);
+    }
+    return ret;
+  }
+
+  private Asset wrap(RuntimeAsset asset) {
+    return assetCache.computeIfAbsent(asset.getId(), id -> new Asset(asset));
+  }
+
+  private void insertEdge(
+      Graph<RuntimeAsset, ClientKnowledgeGraph.Relationship> graph,
+      Asset source,
+      Asset target,
+      ClientKnowledgeGraph.Relationship relationship) {
+    var key = new EdgeKey(source.getId(), target.getId(), relationship.relationship);
+    if (!displayedEdges.containsKey(key)) {
+      displayedEdges.put(key, graph.insertEdge(source, target, relationship));
+    }
+  }
+
+  private Vertex<RuntimeAsset> insertAggregate(
+      Graph<RuntimeAsset, ClientKnowledgeGraph.Relationship> graph,
+      AggregateAsset.Key key,
+      List<Neighbourhood.Link> links,
+      Set<Asset> cache) {
+    var aggregate =
+        new AggregateAsset(
+            key,
+            links.stream().map(Neighbourhood.Link::target).toList(),
+            links.getFirst().relationship());
+    var vertex = graph.insertVertex(aggregate);
+    graph.insertEdge(
+        displayedVertices.get(key.source()).element(), aggregate, aggregate.getRelationship());
+    displayedAggregates.put(key, vertex);
+    cache.add(aggregate);
+    return vertex;
+  }
+
+  /**
+   * Bring the view to the neighbourhood of the passed asset by difference with what is displayed:
+   * vertices and edges present in both stay untouched, keeping their position, and only the rest
+   * is removed or inserted.
+   *
+   * <p>To keep the view usable on large digital twins, groups of at least {@link
+   * #AGGREGATE_THRESHOLD} assets of the same kind linked from the same source are shown as one
+   * {@link AggregateAsset}, which expands when double-clicked. Once {@link #MAX_VISIBLE_VERTICES}
+   * vertices are shown, any further assets are aggregated regardless of the group size; expanded
+   * groups are always shown in full.
+   */
   public void updateGraph(
       Graph<RuntimeAsset, ClientKnowledgeGraph.Relationship> graph, RuntimeAsset asset) {
     if (!initialized || !graphViewReady || graphView == null) {
@@ -307,16 +636,120 @@ public class KnowledgeGraphView extends BorderPane implements DigitalTwinViewer
     }
 
     var focus = knowledgeGraph.getAsset(asset.getId());
-    clear();
+    var neighbourhood =
+        Neighbourhood.extract(
+            knowledgeGraph.getGraph(), focus, depth, relationships, Neighbourhood.MAX_ASSETS);
+    if (neighbourhood.isTruncated()) {
+      Logging.INSTANCE.info(
+          "Knowledge graph view limited to " + neighbourhood.size() + " assets at depth " + depth);
+    }
+
+    // size of each group of same-kind assets one level further from the focus than their source
+    var groupSizes = new HashMap<AggregateAsset.Key, Integer>();
+    for (var link : neighbourhood.getLinks()) {
+      if (neighbourhood.getLevel(link.target().getId())
+          == neighbourhood.getLevel(link.source().getId()) + 1) {
+        groupSizes.merge(
+            new AggregateAsset.Key(link.source().getId(), AggregateAsset.kindOf(link.target())),
+            1,
+            Integer::sum);
+      }
+    }
+
+    // links come in breadth-first order, so sources are decided before their targets
+    var shown = new LinkedHashMap<Long, RuntimeAsset>();
+    shown.put(focus.getId(), focus);
+    var links = new LinkedHashMap<EdgeKey, Neighbourhood.Link>();
+    var aggregates = new LinkedHashMap<AggregateAsset.Key, List<Neighbourhood.Link>>();
+    for (var link : neighbourhood.getLinks()) {
+      if (!shown.containsKey(link.source().getId())) {
+        continue;
+      }
+      var target = link.target();
+      if (!shown.containsKey(target.getId())) {
+        var key = new AggregateAsset.Key(link.source().getId(), AggregateAsset.kindOf(target));
+        if (!expandedAggregates.contains(key)
+            && (groupSizes.getOrDefault(key, 0) >= AGGREGATE_THRESHOLD
+                || shown.size() >= MAX_VISIBLE_VERTICES)) {
+          aggregates.computeIfAbsent(key, k -> new ArrayList<>()).add(link);
+          continue;
+        }
+        shown.put(target.getId(), target);
+      }
+      links.putIfAbsent(
+          new EdgeKey(
+              link.source().getId(), link.target().getId(), link.relationship().relationship),
+          link);
+    }
+    // assets reached through another, expanded path are not part of the aggregate
+    for (var iterator = aggregates.values().iterator(); iterator.hasNext(); ) {
+      var members = iterator.next();
+      members.removeIf(link -> shown.containsKey(link.target().getId()));
+      if (members.isEmpty()) {
+        iterator.remove();
+      }
+    }
+
+    var removedIds = new HashSet<Long>();
+    for (var iterator = displayedVertices.entrySet().iterator(); iterator.hasNext(); ) {
+      var entry = iterator.next();
+      if (!shown.containsKey(entry.getKey())) {
+        graph.removeVertex(entry.getValue());
+        removedIds.add(entry.getKey());
+        iterator.remove();
+      }
+    }
+    for (var iterator = displayedEdges.entrySet().iterator(); iterator.hasNext(); ) {
+      var entry = iterator.next();
+      var key = entry.getKey();
+      if (removedIds.contains(key.source()) || removedIds.contains(key.target())) {
+        // already removed along with the vertex
+        iterator.remove();
+      } else if (!links.containsKey(key)) {
+        graph.removeEdge(entry.getValue());
+        iterator.remove();
+      }
+    }
+
+    // aggregates are kept only if their source and members are unchanged
+    for (var iterator = displayedAggregates.entrySet().iterator(); iterator.hasNext(); ) {
+      var entry = iterator.next();
+      var members = aggregates.get(entry.getKey());
+      if (members == null
+          || removedIds.contains(entry.getKey().source())
+          || members.size() != ((AggregateAsset) entry.getValue().element()).getMembers().size()) {
+        graph.removeVertex(entry.getValue());
+        iterator.remove();
+      }
+    }
+
+    displayedLevels.clear();
     var cache = new HashSet<Asset>();
-    var focusAsset = new Asset(focus);
-    cache.add(focusAsset);
     this.autoLayout = true;
-    graph.insertVertex(focusAsset);
-    fillGraph(this.graphView.getModel(), focusAsset, depth, cache);
+    for (var neighbour : shown.values()) {
+      insertAsset(graph, neighbour, neighbourhood.getLevel(neighbour.getId()), cache);
+    }
+    for (var entry : links.entrySet()) {
+      insertEdge(
+          graph,
+          (Asset) displayedVertices.get(entry.getKey().source()).element(),
+          (Asset) displayedVertices.get(entry.getKey().target()).element(),
+          entry.getValue().relationship());
+    }
+    for (var entry : aggregates.entrySet()) {
+      if (!displayedAggregates.containsKey(entry.getKey())) {
+        insertAggregate(graph, entry.getKey(), entry.getValue(), cache);
+      }
+    }
 
     try {
       this.graphView.update();
+      relayout(cache);
+      // a new focus always gets laid out, even if the layout was paused
+      if (layout.isPaused()) {
+        autoLayout = true;
+        layout.resume();
+      }
       Platform.runLater(
           () -> {
             timeline.drawTimeline();
@@ -349,8 +782,126 @@ public class KnowledgeGraphView extends BorderPane implements DigitalTwinViewer
   @Override
   public void knowledgeGraphModified() {}
 
+  /**
+   * Update the displayed neighbourhood with the changes in the delta: removed assets disappear,
+   * updated ones are rewrapped and new relationships from displayed assets closer than the current
+   * depth bring in their targets. Everything else in the view stays where it is.
+   */
+  @Override
+  public void knowledgeGraphChanged(GraphDelta<RuntimeAsset, GraphModel.Relationship> delta) {
+    Platform.runLater(
+        () -> {
+          if (!isGraphViewReady() || delta.snapshot()) {
+            // snapshots go through the normal focal asset path
+            return;
+          }
+          var graph = graphView.getModel();
+          var removedIds = new HashSet<Long>();
+          for (var asset : delta.removedVertices()) {
+            var vertex = displayedVertices.remove(asset.getId());
+            if (vertex != null) {
+              displayedLevels.remove(asset.getId());
+              graph.removeVertex(vertex);
+              removedIds.add(asset.getId());
+            }
+          }
+          for (var iterator = displayedAggregates.entrySet().iterator(); iterator.hasNext(); ) {
+            var entry = iterator.next();
+            if (removedIds.contains(entry.getKey().source())) {
+              // the edge went with the source; the vertex must go explicitly
+              graph.removeVertex(entry.getValue());
+              iterator.remove();
+            }
+          }
+          for (var edge : delta.removedEdges()) {
+            var key = new EdgeKey(edge.source().getId(), edge.target().getId(), edge.type());
+            var displayed = displayedEdges.remove(key);
+            if (displayed != null && !removedIds.contains(key.source())
+                && !removedIds.contains(key.target())) {
+              graph.removeEdge(displayed);
+            }
+          }
+          if (!removedIds.isEmpty()) {
+            // edges incident to removed vertices were removed along with them
+            displayedEdges.keySet().removeIf(
+                key -> removedIds.contains(key.source()) || removedIds.contains(key.target()));
+          }
+          for (var asset : delta.updatedVertices()) {
+            var vertex = displayedVertices.get(asset.getId());
+            if (vertex != null && vertex.element() instanceof Asset wrapper) {
+              wrapper.setDelegate(asset);
+            }
+          }
+          var inserted = new HashSet<Asset>();
+          var grownAggregates = new HashSet<Vertex<RuntimeAsset>>();
+          for (var edge : delta.addedEdges()) {
+            var level = displayedLevels.get(edge.source().getId());
+            if (level == null || level >= depth || !relationships.contains(edge.type())) {
+              continue;
+            }
+            var relationship = findRelationship(edge);
+            if (relationship == null) {
+              continue;
+            }
+            if (!displayedVertices.containsKey(edge.target().getId())) {
+              // new assets join an aggregate of their kind if there is one, or start one when the
+              // view is full. Aggregates are regrouped on the next focus change.
+              var key =
+                  new AggregateAsset.Key(
+                      edge.source().getId(), AggregateAsset.kindOf(edge.target()));
+              var aggregate = displayedAggregates.get(key);
+              if (aggregate != null) {
+                if (((AggregateAsset) aggregate.element()).addMember(edge.target())) {
+                  grownAggregates.add(aggregate);
+                }
+                continue;
+              } else if (!expandedAggregates.contains(key)
+                  && displayedVertices.size() >= MAX_VISIBLE_VERTICES) {
+                insertAggregate(
+                    graph,
+                    key,
+                    List.of(new Neighbourhood.Link(edge.source(), edge.target(), relationship)),
+                    inserted);
+                continue;
+              }
+            }
+            var source = (Asset) displayedVertices.get(edge.source().getId()).element();
+            var target = insertAsset(graph, edge.target(), level + 1, inserted);
+            insertEdge(graph, source, target, relationship);
+          }
+          for (var aggregate : grownAggregates) {
+            refreshLabel(aggregate);
+          }
+          if (!removedIds.isEmpty() || !inserted.isEmpty() || !delta.removedEdges().isEmpty()) {
+            try {
+              graphView.update();
+              relayout(inserted);
+              for (var asset : inserted) {
+                asset.setStyle(graphView);
+              }
+            } catch (IllegalStateException e) {
+              Logging.INSTANCE.warn("Failed to update graph view: " + e.getMessage());
+            }
+          }
+        });
+  }
+
+  private ClientKnowledgeGraph.Relationship findRelationship(
+      GraphDelta.Edge<RuntimeAsset, GraphModel.Relationship> edge) {
+    var graph = knowledgeGraph.getGraph();
+    if (!graph.containsVertex(edge.source()) || !graph.containsVertex(edge.target())) {
+      return null;
+    }
+    for (var relationship : graph.getAllEdges(edge.source(), edge.target())) {
+      if (relationship.relationship == edge.type()) {
+        return relationship;
+      }
+    }
+    return null;
+  }
+
   @Override
-  public void activitiesModified(org.jgrapht.Graph<Activity, DefaultEdge> activityGraph) {}
+  public void activitiesModified(ActivityGraph activityGraph) {}
 
   @Override
   public void scheduleModified(Schedule schedule) {
@@ -364,7 +915,14 @@ public class KnowledgeGraphView extends BorderPane implements DigitalTwinViewer
   }
 
   @Override
-  public void cleanup() {}
+  public void cleanup() {
+    if (frameTimer != null) {
+      frameTimer.stop();
+    }
+    if (layout != null) {
+      layout.shutdown();
+    }
+  }
 
   public boolean isGraphViewReady() {
     return graphViewReady
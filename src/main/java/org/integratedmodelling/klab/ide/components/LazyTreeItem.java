@@ -0,0 +1,164 @@
+package org.integratedmodelling.klab.ide.components;
+
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import javafx.application.Platform;
+import javafx.beans.value.ObservableValue;
+import javafx.collections.ObservableList;
+import javafx.event.Event;
+import javafx.scene.control.TreeItem;
+
+/**
+ * A tree item that computes its children the first time they are asked for, normally when it is
+ * expanded, so that opening a large tree only creates the items that are actually shown. Leaf
+ * status comes from {@link Source#hasChildren(Object)} until the children are loaded, so it must
+ * not compute them.
+ *
+ * <p>When the garbage collector signals that memory is short (by clearing a soft reference), the
+ * next load schedules the release of the children of all collapsed items in the tree; they are
+ * computed again if the item is expanded later. The release runs in a later pulse, so that it never
+ * changes the tree while a layout pass walks it, and it keeps the items loaded until then and the
+ * path to the selected item (see {@link #setSelection(ObservableValue)}), whose children callers
+ * are using. All methods must be called on the FX thread.
+ *
+ * @param <T>
+ */
+public class LazyTreeItem<T> extends TreeItem<T> {
+
+  /**
+   * Supplies the children of the values in a tree. Items made or released can be followed through
+   * the children modification events, e.g. with a {@link TreeItemIndex}.
+   */
+  public interface Source<T> {
+
+    List<? extends T> children(T value);
+
+    /** Must be cheap: it is called for every visible item that has not been expanded. */
+    boolean hasChildren(T value);
+  }
+
+  // cleared by the collector before it runs out of memory; renewed after each release
+  private static SoftReference<Object> memorySentinel = new SoftReference<>(new Object());
+  // items loaded since a release was scheduled, which the release must keep
+  private static final List<TreeItem<?>> loadedBeforeRelease = new ArrayList<>();
+  private static boolean releaseScheduled;
+
+  private final Source<T> source;
+  private boolean loaded;
+  private ObservableValue<? extends TreeItem<T>> selection;
+
+  public LazyTreeItem(T value, Source<T> source) {
+    super(value);
+    this.source = source;
+  }
+
+  public Source<T> getSource() {
+    return source;
+  }
+
+  /**
+   * Set on the root to keep the path to the selected item loaded when memory is released, normally
+   * to the selected item property of the tree view's selection model.
+   */
+  public void setSelection(ObservableValue<? extends TreeItem<T>> selection) {
+    this.selection = selection;
+  }
+
+  /** Whether the children have been computed and are held by this item. */
+  public boolean isLoaded() {
+    return loaded;
+  }
+
+  @Override
+  public ObservableList<TreeItem<T>> getChildren() {
+    if (!loaded) {
+      loaded = true;
+      var items = new ArrayList<TreeItem<T>>();
+      for (T child : source.children(getValue())) {
+        items.add(new LazyTreeItem<>(child, source));
+      }
+      super.getChildren().setAll(items);
+      if (releaseScheduled) {
+        loadedBeforeRelease.add(this);
+      } else if (memorySentinel.get() == null) {
+        memorySentinel = new SoftReference<>(new Object());
+        if (getRoot() instanceof LazyTreeItem<T> root) {
+          releaseScheduled = true;
+          loadedBeforeRelease.add(this);
+          Platform.runLater(root::releaseCollapsed);
+        }
+      }
+    }
+    return super.getChildren();
+  }
+
+  @Override
+  public boolean isLeaf() {
+    return loaded ? super.getChildren().isEmpty() : !source.hasChildren(getValue());
+  }
+
+  /**
+   * Forget the children so that they are computed again from the source when next needed, and
+   * refresh the leaf status shown for this item.
+   */
+  public void invalidate() {
+    release();
+    Event.fireEvent(this, new TreeModificationEvent<>(valueChangedEvent(), this, getValue()));
+  }
+
+  /**
+   * Release the children of all the collapsed items in this subtree, except those on the path to
+   * the selection or to an item loaded since the release was scheduled.
+   */
+  private void releaseCollapsed() {
+    var keep = new HashSet<TreeItem<?>>();
+    for (var item : loadedBeforeRelease) {
+      addPath(item, keep);
+    }
+    if (selection != null) {
+      addPath(selection.getValue(), keep);
+    }
+    loadedBeforeRelease.clear();
+    releaseScheduled = false;
+    releaseCollapsed(keep);
+  }
+
+  private void releaseCollapsed(Set<TreeItem<?>> keep) {
+    if (!loaded) {
+      return;
+    }
+    if (!isExpanded() && getParent() != null && !keep.contains(this)) {
+      release();
+      return;
+    }
+    for (var child : super.getChildren()) {
+      if (child instanceof LazyTreeItem<T> lazy) {
+        lazy.releaseCollapsed(keep);
+      }
+    }
+  }
+
+  private static void addPath(TreeItem<?> item, Set<TreeItem<?>> path) {
+    for (; item != null; item = item.getParent()) {
+      path.add(item);
+    }
+  }
+
+  private void release() {
+    if (loaded) {
+      loaded = false;
+      super.getChildren().clear();
+    }
+  }
+
+  private TreeItem<T> getRoot() {
+    TreeItem<T> ret = this;
+    while (ret.getParent() != null) {
+      ret = ret.getParent();
+    }
+    return ret;
+  }
+}
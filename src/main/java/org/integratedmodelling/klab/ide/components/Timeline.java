@@ -1,23 +1,22 @@
 package org.integratedmodelling.klab.ide.components;
 
 import javafx.application.Platform;
-import javafx.geometry.Insets;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.Pane;
 import javafx.scene.layout.Priority;
 import javafx.scene.layout.VBox;
 import javafx.scene.paint.Color;
-import javafx.scene.shape.Circle;
-import javafx.scene.shape.Rectangle;
 import javafx.scene.control.Label;
 import javafx.scene.control.Slider;
 import javafx.scene.control.Tooltip;
-import javafx.scene.Node;
 
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
@@ -27,6 +26,11 @@ import java.util.function.Consumer;
  * gray colors. The timeline is configured with a start and end time (in milliseconds from epoch)
  * and a temporal resolution (time unit and multiplier). The end time can be changed, and the
  * background will update accordingly.
+ *
+ * <p>The timeline is painted on a single {@link Canvas}: only the intervals and events that fit
+ * the visible width are drawn, tooltips are computed from the mouse position when needed, and
+ * repaints happen only after something invalidates the current picture (resize, end time change,
+ * new events, hover changes). Several invalidations in the same pulse cause a single repaint.
  */
 public class Timeline extends Components.BaseComponent {
 
@@ -57,7 +61,6 @@ public class Timeline extends Components.BaseComponent {
     private final long timestamp;
     private final EventType type;
     private final Consumer<Event> onClick;
-    private Node icon;
 
     /**
      * Creates a new event with the specified timestamp, type, and click handler.
@@ -98,37 +101,233 @@ public class Timeline extends Components.BaseComponent {
     public Consumer<Event> getOnClick() {
       return onClick;
     }
+  }
 
-    /**
-     * Sets the icon node for this event.
-     *
-     * @param icon The JavaFX node representing the icon
-     */
-    void setIcon(Node icon) {
-      this.icon = icon;
+  /**
+   * Events sorted by timestamp in parallel primitive arrays, with the position of each event in the
+   * stack of events sharing its timestamp computed once at insertion. Events with the same
+   * timestamp keep their insertion order. Range queries are binary searches, so painting and hit
+   * testing only look at the events in the visible window.
+   */
+  private static final class EventIndex {
+
+    private long[] timestamps = new long[64];
+    private byte[] types = new byte[64];
+    private int[] stack = new int[64];
+    private Event[] events = new Event[64];
+    private int size;
+
+    void insert(Event event) {
+      if (size == timestamps.length) {
+        int capacity = size * 2;
+        timestamps = Arrays.copyOf(timestamps, capacity);
+        types = Arrays.copyOf(types, capacity);
+        stack = Arrays.copyOf(stack, capacity);
+        events = Arrays.copyOf(events, capacity);
+      }
+      long timestamp = event.getTimestamp();
+      // after any events with the same timestamp; usually at the end, so nothing moves
+      int position = upperBound(timestamp);
+      int moved = size - position;
+      if (moved > 0) {
+        System.arraycopy(timestamps, position, timestamps, position + 1, moved);
+        System.arraycopy(types, position, types, position + 1, moved);
+        System.arraycopy(stack, position, stack, position + 1, moved);
+        System.arraycopy(events, position, events, position + 1, moved);
+      }
+      timestamps[position] = timestamp;
+      types[position] = (byte) event.getType().ordinal();
+      stack[position] = position - lowerBound(timestamp);
+      events[position] = event;
+      size++;
     }
 
-    /**
-     * Gets the icon node for this event.
-     *
-     * @return The JavaFX node representing the icon
-     */
-    Node getIcon() {
-      return icon;
+    /** Index of the first event at or after the passed time. */
+    int lowerBound(long time) {
+      int low = 0;
+      int high = size;
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (timestamps[mid] < time) {
+          low = mid + 1;
+        } else {
+          high = mid;
+        }
+      }
+      return low;
+    }
+
+    /** Index of the first event after the passed time. */
+    int upperBound(long time) {
+      int low = 0;
+      int high = size;
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (timestamps[mid] <= time) {
+          low = mid + 1;
+        } else {
+          high = mid;
+        }
+      }
+      return low;
+    }
+
+    int size() {
+      return size;
+    }
+
+    long getTimestamp(int i) {
+      return timestamps[i];
+    }
+
+    EventType getType(int i) {
+      return EVENT_TYPES[types[i]];
+    }
+
+    int getStack(int i) {
+      return stack[i];
+    }
+
+    Event getEvent(int i) {
+      return events[i];
     }
   }
 
+  /**
+   * Event counts per {@link EventType} in a pyramid of time buckets: level 0 divides the span of
+   * the timeline into at most {@link #MAX_BUCKETS} buckets and each further level halves the
+   * number of buckets. Counts are updated at insertion in all levels, so a density view at any zoom
+   * can be painted from the level whose buckets are a few pixels wide, at a cost that depends on
+   * the width of the view and not on the number of events.
+   */
+  private static final class EventPyramid {
+
+    private static final int MAX_BUCKETS = 4096;
+
+    private final long originMs;
+    private long bucketMs;
+    private int buckets;
+    private int[][] counts = new int[0][];
+
+    EventPyramid(long originMs) {
+      this.originMs = originMs;
+    }
+
+    /** Resize for a span, dropping all counts. */
+    void reset(long minBucketMs, long spanMs) {
+      bucketMs = Math.max(minBucketMs, (spanMs + MAX_BUCKETS - 1) / MAX_BUCKETS);
+      buckets = (int) ((spanMs + bucketMs - 1) / bucketMs) + 1;
+      int levels = 1;
+      while ((buckets - 1 >> (levels - 1)) > 0) {
+        levels++;
+      }
+      counts = new int[levels][];
+      for (int level = 0; level < levels; level++) {
+        counts[level] = new int[getBuckets(level) * EVENT_TYPES.length];
+      }
+    }
+
+    /** Whether the passed time falls within the buckets, so that it can be added. */
+    boolean covers(long timeMs) {
+      return timeMs < originMs + buckets * bucketMs;
+    }
+
+    void add(long timeMs, EventType type) {
+      int bucket = getBucket(0, timeMs);
+      for (int level = 0; level < counts.length; level++) {
+        counts[level][(bucket >> level) * EVENT_TYPES.length + type.ordinal()]++;
+      }
+    }
+
+    /** The finest level whose buckets are at least the passed number of pixels wide. */
+    int getLevel(double msPerPixel, double minPixels) {
+      for (int level = 0; level < counts.length; level++) {
+        if (getBucketMs(level) / msPerPixel >= minPixels) {
+          return level;
+        }
+      }
+      return counts.length - 1;
+    }
+
+    long getBucketMs(int level) {
+      return bucketMs << level;
+    }
+
+    int getBuckets(int level) {
+      return ((buckets - 1) >> level) + 1;
+    }
+
+    /** Bucket containing the passed time at a level, clamped to the existing buckets. */
+    int getBucket(int level, long timeMs) {
+      long bucket = Math.floorDiv(timeMs - originMs, bucketMs) >> level;
+      return (int) Math.max(0, Math.min(getBuckets(level) - 1, bucket));
+    }
+
+    long getBucketStart(int level, int bucket) {
+      return originMs + bucket * getBucketMs(level);
+    }
+
+    int getCount(int level, int bucket, EventType type) {
+      return counts[level][bucket * EVENT_TYPES.length + type.ordinal()];
+    }
+
+    int getTotal(int level, int bucket) {
+      int ret = 0;
+      for (int type = 0; type < EVENT_TYPES.length; type++) {
+        ret += counts[level][bucket * EVENT_TYPES.length + type];
+      }
+      return ret;
+    }
+  }
+
+  private static final EventType[] EVENT_TYPES = EventType.values();
+
+  /** Resolutions the display switches between when zooming, from the configured one upwards. */
+  private static final long[] DISPLAY_INTERVALS_MS = {
+    1000L,
+    5000L,
+    15000L,
+    30000L,
+    60000L,
+    300000L,
+    900000L,
+    1800000L,
+    3600000L,
+    10800000L,
+    21600000L,
+    43200000L,
+    86400000L,
+    604800000L,
+    2592000000L,
+    31536000000L
+  };
+
   private long startTimeMs;
   private long endTimeMs;
   private TimeUnit timeUnit;
   private int multiplier;
 
   private Pane timelinePane;
+  private Canvas canvas;
+  private Tooltip tooltip;
   private Label startTimeLabel;
   private Label endTimeLabel;
   private Slider endTimeSlider;
 
-  private List<Event> events = new ArrayList<>();
+  private final EventIndex events = new EventIndex();
+  private final EventPyramid pyramid;
+
+  // the visible window, zoomed with the mouse wheel and panned by dragging
+  private long viewStartMs;
+  private long viewEndMs;
+  private double dragX;
+  // pyramid level of the density bars painted last, or -1 if single events were painted
+  private int paintedLevel = -1;
+  private long paintedIntervalMs;
+
+  private boolean repaintScheduled;
+  private Event hoveredEvent;
+  private String tooltipKey;
 
   private static final Color LIGHT_GREY = Color.rgb(240, 240, 240);
   private static final Color DARK_GREY = Color.rgb(220, 220, 220);
@@ -136,7 +335,16 @@ public class Timeline extends Components.BaseComponent {
   private static final double EVENT_VERTICAL_SPACING = 5.0;
   private static final DateTimeFormatter TIME_FORMATTER =
       DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneId.systemDefault());
-        private static final double TIME_EVENT_BOTTOM_MARGIN = 10.0;
+  private static final double TIME_EVENT_BOTTOM_MARGIN = 10.0;
+  private static final double EVENT_RADIUS = 3;
+  private static final double HOVERED_EVENT_RADIUS = 7;
+  // intervals narrower than this are merged for display so that the stripes stay visible
+  private static final double MIN_INTERVAL_WIDTH = 8;
+  // density bars are painted instead of single events when there are more events than this per
+  // pixel of width
+  private static final double MAX_EVENTS_PER_PIXEL = 0.25;
+  private static final double MIN_BUCKET_WIDTH = 3;
+  private static final double ZOOM_FACTOR = 1.25;
 
   /**
    * Creates a new Timeline component with the specified configuration.
@@ -152,40 +360,73 @@ public class Timeline extends Components.BaseComponent {
     this.endTimeMs = endTimeMs;
     this.timeUnit = timeUnit;
     this.multiplier = multiplier;
+    this.viewStartMs = startTimeMs;
+    this.viewEndMs = endTimeMs;
+    this.pyramid = new EventPyramid(startTimeMs);
+    this.pyramid.reset(getIntervalMs(), endTimeMs - startTimeMs);
     createContent();
   }
 
   @Override
   protected void createContent() {
     VBox container = new VBox(10);
-//    container.setPadding(new Insets(10));
 
-    // Create the timeline pane
+    // Create the timeline pane, holding the canvas that is resized with it
     timelinePane = new Pane();
     timelinePane.setPrefHeight(65);
     timelinePane.setMinHeight(65);
     timelinePane.setMaxHeight(65);
     HBox.setHgrow(timelinePane, Priority.ALWAYS);
 
+    canvas = new Canvas();
+    canvas.widthProperty().bind(timelinePane.widthProperty());
+    canvas.heightProperty().bind(timelinePane.heightProperty());
+    canvas.widthProperty().addListener((obs, oldVal, newVal) -> drawTimeline());
+    canvas.heightProperty().addListener((obs, oldVal, newVal) -> drawTimeline());
+    timelinePane.getChildren().add(canvas);
+
+    // One tooltip for the whole canvas; its text depends on what is under the mouse
+    tooltip = new Tooltip();
+    Tooltip.install(canvas, tooltip);
+    tooltip.setOnShowing(e -> tooltip.setText(tooltipKey == null ? "" : tooltipKey));
+
+    canvas.setOnMouseMoved(e -> updateHover(e.getX(), e.getY()));
+    canvas.setOnMouseExited(
+        e -> {
+          if (hoveredEvent != null) {
+            hoveredEvent = null;
+            drawTimeline();
+          }
+        });
+    canvas.setOnMouseClicked(
+        e -> {
+          if (!e.isStillSincePress()) {
+            // end of a drag
+            return;
+          }
+          Event event = findEvent(e.getX(), e.getY());
+          if (event != null && event.getOnClick() != null) {
+            event.getOnClick().accept(event);
+          } else if (event == null && e.getClickCount() == 2) {
+            // double click on the background shows the whole timeline again
+            viewStartMs = startTimeMs;
+            viewEndMs = endTimeMs;
+            drawTimeline();
+          }
+        });
+    canvas.setOnScroll(e -> zoom(e.getX(), e.getDeltaY() > 0 ? 1 / ZOOM_FACTOR : ZOOM_FACTOR));
+    canvas.setOnMousePressed(e -> dragX = e.getX());
+    canvas.setOnMouseDragged(
+        e -> {
+          double msPerPixel = (viewEndMs - viewStartMs) / canvas.getWidth();
+          pan((long) ((dragX - e.getX()) * msPerPixel));
+          dragX = e.getX();
+        });
+
     // Create time labels
     startTimeLabel = new Label(formatTime(startTimeMs));
     endTimeLabel = new Label(formatTime(endTimeMs));
 
-//    HBox labelsBox = new HBox();
-//    labelsBox.setSpacing(10);
-//    HBox.setHgrow(labelsBox, Priority.ALWAYS);
-//
-//    VBox startLabelBox = new VBox(startTimeLabel);
-//    startLabelBox.setAlignment(javafx.geometry.Pos.CENTER_LEFT);
-//
-//    VBox endLabelBox = new VBox(endTimeLabel);
-//    endLabelBox.setAlignment(javafx.geometry.Pos.CENTER_RIGHT);
-//
-//    HBox.setHgrow(startLabelBox, Priority.ALWAYS);
-//    HBox.setHgrow(endLabelBox, Priority.ALWAYS);
-//
-//    labelsBox.getChildren().addAll(startLabelBox, endLabelBox);
-
     // Create end time slider
     endTimeSlider = new Slider();
     endTimeSlider.setMin(startTimeMs);
@@ -201,7 +442,7 @@ public class Timeline extends Components.BaseComponent {
             });
 
     // Add components to container
-    container.getChildren().addAll(timelinePane/*, labelsBox*/, endTimeSlider);
+    container.getChildren().addAll(timelinePane, endTimeSlider);
 
     this.getChildren().add(container);
 
@@ -216,12 +457,69 @@ public class Timeline extends Components.BaseComponent {
    */
   public void updateEndTime(long newEndTimeMs) {
     if (newEndTimeMs > startTimeMs) {
+      // the view keeps following the end while it shows it
+      boolean followEnd = viewEndMs >= endTimeMs;
       this.endTimeMs = newEndTimeMs;
+      if (followEnd || viewEndMs > endTimeMs) {
+        viewEndMs = endTimeMs;
+        viewStartMs = Math.max(startTimeMs, Math.min(viewStartMs, viewEndMs - getMinViewMs()));
+      }
+      if (!pyramid.covers(endTimeMs)) {
+        rebuildPyramid();
+      }
       endTimeLabel.setText(formatTime(endTimeMs));
       drawTimeline();
     }
   }
 
+  /**
+   * Zooms the visible window around a position on the canvas.
+   *
+   * @param x The position that stays fixed
+   * @param factor The ratio between the new and the old window duration
+   */
+  private void zoom(double x, double factor) {
+    double width = canvas.getWidth();
+    if (width <= 0) {
+      return;
+    }
+    long pivot = toTime(x, width);
+    long viewMs = viewEndMs - viewStartMs;
+    long newViewMs =
+        Math.max(getMinViewMs(), Math.min(endTimeMs - startTimeMs, (long) (viewMs * factor)));
+    long newStart = pivot - (long) ((double) (pivot - viewStartMs) / viewMs * newViewMs);
+    newStart = Math.max(startTimeMs, Math.min(endTimeMs - newViewMs, newStart));
+    viewStartMs = newStart;
+    viewEndMs = newStart + newViewMs;
+    drawTimeline();
+  }
+
+  /** Moves the visible window by the passed amount of time, within the timeline bounds. */
+  private void pan(long deltaMs) {
+    long viewMs = viewEndMs - viewStartMs;
+    long newStart = Math.max(startTimeMs, Math.min(endTimeMs - viewMs, viewStartMs + deltaMs));
+    if (newStart != viewStartMs) {
+      viewStartMs = newStart;
+      viewEndMs = newStart + viewMs;
+      drawTimeline();
+    }
+  }
+
+  /** The narrowest window that can be zoomed to: a few intervals of the configured resolution. */
+  private long getMinViewMs() {
+    return Math.min(endTimeMs - startTimeMs, 4 * getIntervalMs());
+  }
+
+  /** Resizes the pyramid to twice the current span and counts all events again. */
+  private void rebuildPyramid() {
+    long lastMs = events.size() == 0 ? endTimeMs : events.getTimestamp(events.size() - 1);
+    long spanMs = Math.max(endTimeMs, lastMs) - startTimeMs;
+    pyramid.reset(getIntervalMs(), 2 * spanMs);
+    for (int i = 0; i < events.size(); i++) {
+      pyramid.add(events.getTimestamp(i), events.getType(i));
+    }
+  }
+
   /**
    * Inserts one or more events into the timeline. If an event has a timestamp beyond the timeline's
    * end time, the timeline's span is automatically extended.
@@ -240,7 +538,12 @@ public class Timeline extends Components.BaseComponent {
         }
       }
 
-      this.events.add(event);
+      this.events.insert(event);
+      if (pyramid.covers(event.getTimestamp())) {
+        pyramid.add(event.getTimestamp(), event.getType());
+      } else {
+        rebuildPyramid();
+      }
     }
 
     // Redraw the timeline to show the new events
@@ -248,154 +551,238 @@ public class Timeline extends Components.BaseComponent {
   }
 
   /**
-   * Creates an icon for an event based on its type.
+   * Gets the color used to paint an event based on its type.
    *
-   * @param event The event to create an icon for
-   * @return The icon node
+   * @param type The event type
+   * @return The color
    */
-  private Node createEventIcon(Event event) {
-    Circle circle = new Circle(3);
-
-    // Set the color based on the event type
-    switch (event.getType()) {
-      case EVENT_EXTERNAL:
-        circle.setFill(Color.BLUE);
-        break;
-      case WARNING:
-        circle.setFill(Color.ORANGE);
-        break;
-      case ERROR:
-        circle.setFill(Color.RED);
-        break;
-      case EVENT_INTERNAL:
-        circle.setFill(Color.GREEN);
-        break;
-      case TIME:
-      default:
-        circle.setFill(DEFAULT_EVENT_COLOR);
-        // Position TIME events on the timeline
-        circle.setLayoutY(timelinePane.getHeight() - TIME_EVENT_BOTTOM_MARGIN);
-        break;
-    }
-    // Add a tooltip showing the event timestamp
-    Tooltip tooltip = new Tooltip(formatTime(event.getTimestamp()));
-    Tooltip.install(circle, tooltip);
-
-    // Add click handler
-    circle.setOnMouseClicked(
-        e -> {
-          if (event.getOnClick() != null) {
-            event.getOnClick().accept(event);
-          }
-        });
-
-    // Make the circle slightly larger when hovered
-    circle.setOnMouseEntered(e -> circle.setRadius(7));
-    circle.setOnMouseExited(e -> circle.setRadius(3));
-
-    return circle;
+  private static Color getEventColor(EventType type) {
+    return switch (type) {
+      case EVENT_EXTERNAL -> Color.BLUE;
+      case WARNING -> Color.ORANGE;
+      case ERROR -> Color.RED;
+      case EVENT_INTERNAL -> Color.GREEN;
+      case TIME -> DEFAULT_EVENT_COLOR;
+    };
   }
 
   /**
-   * Draws the timeline with alternating vertical sections of contrasting grey colors. Also draws
-   * any events that have been added to the timeline.
+   * Invalidates the timeline so that it is repainted in the next pulse. Any number of calls before
+   * the repaint result in a single repaint, so callers don't need to batch their changes.
    */
   public void drawTimeline() {
-    timelinePane.getChildren().clear();
-
-    double width = timelinePane.getWidth();
-    double height = timelinePane.getHeight();
-    
-    if (width <= 0) {
-      // If the pane hasn't been laid out yet, set a listener to redraw when it is
-      timelinePane
-          .widthProperty()
-          .addListener(
-              (obs, oldVal, newVal) -> {
-                if (newVal.doubleValue() > 0) {
-                  drawTimeline();
-                }
-              });
-      return;
+    if (!repaintScheduled) {
+      repaintScheduled = true;
+      // deferred even on the FX thread, so that all changes made in this pulse are painted together
+      Platform.runLater(this::paint);
     }
+  }
 
-    // Calculate the duration in the specified time unit
-    long durationMs = endTimeMs - startTimeMs;
-    long durationInUnit = timeUnit.convert(durationMs, TimeUnit.MILLISECONDS);
-
-    // Calculate the number of intervals
-    int numIntervals = (int) Math.ceil((double) durationInUnit / multiplier);
-
-    // Calculate the width of each interval
-    double intervalWidth = width / numIntervals;
+  /**
+   * Gets the duration of one interval of the configured temporal resolution.
+   *
+   * @return The interval length in milliseconds
+   */
+  private long getIntervalMs() {
+    return Math.max(1, multiplier * timeUnit.toMillis(1));
+  }
 
-    // Draw the alternating sections
-    for (int i = 0; i < numIntervals; i++) {
-      Rectangle section = new Rectangle(i * intervalWidth, 0, intervalWidth, height);
+  /**
+   * Chooses the display resolution for a zoom level: the configured one if its intervals are wide
+   * enough to see, otherwise the first coarser standard interval that is.
+   */
+  private long getDisplayIntervalMs(double msPerPixel) {
+    long intervalMs = getIntervalMs();
+    if (intervalMs / msPerPixel >= MIN_INTERVAL_WIDTH) {
+      return intervalMs;
+    }
+    for (long candidate : DISPLAY_INTERVALS_MS) {
+      if (candidate > intervalMs && candidate / msPerPixel >= MIN_INTERVAL_WIDTH) {
+        return candidate;
+      }
+    }
+    long ret = Math.max(intervalMs, DISPLAY_INTERVALS_MS[DISPLAY_INTERVALS_MS.length - 1]);
+    while (ret / msPerPixel < MIN_INTERVAL_WIDTH) {
+      ret *= 2;
+    }
+    return ret;
+  }
 
-      // Calculate interval start and end times
-      long intervalStart = startTimeMs + (long) ((double) i * multiplier * timeUnit.toMillis(1));
-      long intervalEnd =
-          startTimeMs + (long) ((double) (i + 1) * multiplier * timeUnit.toMillis(1));
+  /** Converts a timestamp to a horizontal position on the canvas. */
+  private double toX(long timeMs, double width) {
+    return ((double) (timeMs - viewStartMs) / (viewEndMs - viewStartMs)) * width;
+  }
 
-      // Create tooltip with interval information
-      String tooltipText =
-          String.format("From: %s%nTo: %s", formatTime(intervalStart), formatTime(intervalEnd));
-      Tooltip.install(section, new Tooltip(tooltipText));
+  /** Converts a horizontal position on the canvas to a timestamp. */
+  private long toTime(double x, double width) {
+    return viewStartMs + (long) (x / width * (viewEndMs - viewStartMs));
+  }
 
-      // Alternate between light and dark grey
-      section.setFill(i % 2 == 0 ? LIGHT_GREY : DARK_GREY);
+  /**
+   * Paints the visible window with alternating vertical sections of contrasting grey colors and the
+   * events. The resolution of the sections follows the zoom, so the cost depends on the width of
+   * the canvas and not on the length of the timeline. When there are too many events in the window
+   * to tell apart, per-type density bars from the {@link EventPyramid} are painted instead.
+   */
+  private void paint() {
+    repaintScheduled = false;
 
-      timelinePane.getChildren().add(section);
+    double width = canvas.getWidth();
+    double height = canvas.getHeight();
+    if (width <= 0 || height <= 0 || endTimeMs <= startTimeMs) {
+      // not laid out yet: the size listeners will repaint
+      return;
+    }
 
-      // Draw horizontal line for TIME events
-      Rectangle timeLine = new Rectangle(0, height - TIME_EVENT_BOTTOM_MARGIN, width, 1);
-      timeLine.setFill(Color.LIGHTGREY);
-      timelinePane.getChildren().add(timeLine);
+    GraphicsContext gc = canvas.getGraphicsContext2D();
+    gc.clearRect(0, 0, width, height);
+
+    double msPerPixel = (double) (viewEndMs - viewStartMs) / width;
+    long intervalMs = getDisplayIntervalMs(msPerPixel);
+    paintedIntervalMs = intervalMs;
+    long firstStripe = Math.floorDiv(viewStartMs - startTimeMs, intervalMs);
+    long lastStripe = Math.floorDiv(Math.min(viewEndMs, endTimeMs) - startTimeMs, intervalMs);
+    for (long i = firstStripe; i <= lastStripe; i++) {
+      double x0 = Math.max(0, toX(startTimeMs + i * intervalMs, width));
+      double x1 = Math.min(width, toX(startTimeMs + (i + 1) * intervalMs, width));
+      gc.setFill(Math.floorMod(i, 2) == 0 ? LIGHT_GREY : DARK_GREY);
+      gc.fillRect(x0, 0, x1 - x0, height);
     }
 
-    // Draw the events
-    for (Event event : events) {
-      // Calculate the x position based on the event timestamp
-      double position = ((double) (event.getTimestamp() - startTimeMs) / durationMs) * width;
+    // Draw horizontal line for TIME events
+    gc.setFill(Color.LIGHTGREY);
+    gc.fillRect(0, height - TIME_EVENT_BOTTOM_MARGIN, width, 1);
 
-      // Create the event icon if it doesn't exist
-      if (event.getIcon() == null) {
-        event.setIcon(createEventIcon(event));
+    // only the events in the visible window
+    int first = events.lowerBound(toTime(-HOVERED_EVENT_RADIUS, width));
+    int last = events.upperBound(toTime(width + HOVERED_EVENT_RADIUS, width));
+    if (last - first > width * MAX_EVENTS_PER_PIXEL) {
+      paintDensity(gc, width, height, msPerPixel);
+      return;
+    }
+    paintedLevel = -1;
+    EventType currentType = null;
+    for (int i = first; i < last; i++) {
+      EventType type = events.getType(i);
+      if (type != currentType) {
+        currentType = type;
+        gc.setFill(getEventColor(type));
       }
+      double x = toX(events.getTimestamp(i), width);
+      double y = getEventY(i, height);
+      double radius = events.getEvent(i) == hoveredEvent ? HOVERED_EVENT_RADIUS : EVENT_RADIUS;
+      gc.fillOval(x - radius, y - radius, radius * 2, radius * 2);
+    }
+  }
 
-      Node icon = event.getIcon();
-
-      // Find events at the same timestamp
-      int eventsAtSameTime = 0;
-      int currentEventIndex = 0;
-      for (int i = 0; i < events.size(); i++) {
-        if (events.get(i).getTimestamp() == event.getTimestamp()) {
-          if (events.get(i) == event) {
-            currentEventIndex = eventsAtSameTime;
-          }
-          eventsAtSameTime++;
+  /**
+   * Paints stacked per-type bars with the number of events in each bucket of the pyramid level that
+   * best fits the zoom, scaled to the fullest visible bucket.
+   */
+  private void paintDensity(GraphicsContext gc, double width, double height, double msPerPixel) {
+    int level = pyramid.getLevel(msPerPixel, MIN_BUCKET_WIDTH);
+    paintedLevel = level;
+    int firstBucket = pyramid.getBucket(level, viewStartMs);
+    int lastBucket = pyramid.getBucket(level, viewEndMs);
+    int max = 1;
+    for (int b = firstBucket; b <= lastBucket; b++) {
+      max = Math.max(max, pyramid.getTotal(level, b));
+    }
+    double baseline = height - TIME_EVENT_BOTTOM_MARGIN;
+    double scale = (baseline - 5) / max;
+    for (int b = firstBucket; b <= lastBucket; b++) {
+      double x0 = Math.max(0, toX(pyramid.getBucketStart(level, b), width));
+      double x1 = Math.min(width, toX(pyramid.getBucketStart(level, b + 1), width));
+      double y = baseline;
+      for (EventType type : EVENT_TYPES) {
+        int count = pyramid.getCount(level, b, type);
+        if (count > 0) {
+          double barHeight = Math.max(1, count * scale);
+          gc.setFill(getEventColor(type));
+          gc.fillRect(x0, y - barHeight, Math.max(1, x1 - x0 - 1), barHeight);
+          y -= barHeight;
         }
       }
+    }
+  }
 
-      // Position the icon with vertical offset if needed
-      icon.setLayoutX(position);
-      if (event.getType() != EventType.TIME) {
-        double baseOffset = 20; // Base distance from bottom
-        double verticalSpacing = 10; // Space between events
-        double proposedY = height - (baseOffset + (verticalSpacing * currentEventIndex));
-
-        // Ensure the event doesn't go beyond the top of the timeline
-        // Leave 5px margin from top
-        if (proposedY < 10) {
-          proposedY = 10;
-        }
+  /**
+   * Computes the vertical position of an event: TIME events sit on the bottom line, all others are
+   * stacked above it in insertion order.
+   */
+  private double getEventY(int index, double height) {
+    if (events.getType(index) == EventType.TIME) {
+      return height - TIME_EVENT_BOTTOM_MARGIN;
+    }
+    double baseOffset = 20; // Base distance from bottom
+    double verticalSpacing = 10; // Space between events
+    double proposedY = height - (baseOffset + (verticalSpacing * events.getStack(index)));
+    // Ensure the event doesn't go beyond the top of the timeline
+    return Math.max(10, proposedY);
+  }
 
-        icon.setLayoutY(proposedY);
+  /**
+   * Finds the event under a point on the canvas, if any.
+   *
+   * @return The event, or null
+   */
+  private Event findEvent(double x, double y) {
+    double width = canvas.getWidth();
+    double height = canvas.getHeight();
+    if (width <= 0 || paintedLevel >= 0) {
+      // events are not individually visible in the density view
+      return null;
+    }
+    Event ret = null;
+    double best = HOVERED_EVENT_RADIUS * HOVERED_EVENT_RADIUS;
+    int first = events.lowerBound(toTime(x - HOVERED_EVENT_RADIUS, width));
+    int last = events.upperBound(toTime(x + HOVERED_EVENT_RADIUS, width));
+    for (int i = first; i < last; i++) {
+      double dx = toX(events.getTimestamp(i), width) - x;
+      double dy = getEventY(i, height) - y;
+      double d2 = dx * dx + dy * dy;
+      if (d2 <= best) {
+        best = d2;
+        ret = events.getEvent(i);
       }
+    }
+    return ret;
+  }
 
-      // Add the icon to the timeline
-      timelinePane.getChildren().add(icon);
+  /**
+   * Updates the hovered event and the tooltip text for the mouse position. The tooltip shows the
+   * event time when over an event, and the interval bounds otherwise.
+   */
+  private void updateHover(double x, double y) {
+    Event event = findEvent(x, y);
+    String key;
+    long time = toTime(x, canvas.getWidth());
+    if (event != null) {
+      key = formatTime(event.getTimestamp());
+    } else if (paintedLevel >= 0) {
+      int bucket = pyramid.getBucket(paintedLevel, time);
+      long bucketStart = pyramid.getBucketStart(paintedLevel, bucket);
+      key =
+          String.format(
+              "From: %s%nTo: %s%n%d events",
+              formatTime(bucketStart),
+              formatTime(bucketStart + pyramid.getBucketMs(paintedLevel)),
+              pyramid.getTotal(paintedLevel, bucket));
+    } else {
+      long intervalMs = paintedIntervalMs > 0 ? paintedIntervalMs : getIntervalMs();
+      long intervalStart =
+          startTimeMs + Math.floorDiv(time - startTimeMs, intervalMs) * intervalMs;
+      key =
+          String.format(
+              "From: %s%nTo: %s", formatTime(intervalStart), formatTime(intervalStart + intervalMs));
+    }
+    if (!key.equals(tooltipKey)) {
+      tooltipKey = key;
+      tooltip.setText(key);
+    }
+    if (event != hoveredEvent) {
+      hoveredEvent = event;
+      drawTimeline();
     }
   }
 
@@ -446,11 +833,15 @@ public class Timeline extends Components.BaseComponent {
   }
 
   /**
-   * Gets the list of events on the timeline.
+   * Gets the list of events on the timeline, in time order.
    *
    * @return The list of events
    */
   public List<Event> getEvents() {
-    return new ArrayList<>(events);
+    List<Event> ret = new ArrayList<>(events.size());
+    for (int i = 0; i < events.size(); i++) {
+      ret.add(events.getEvent(i));
+    }
+    return ret;
   }
 }
@@ -0,0 +1,101 @@
+package org.integratedmodelling.klab.ide.components;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import javafx.collections.ObservableList;
+import javafx.scene.control.TreeItem;
+
+/**
+ * Brings the children of a tree item in line with an updated list of items, reusing the items that
+ * are in both. Listeners such as {@link TreeItemIndex} and the tree view only see what actually
+ * changed: the items that are kept are never reported as removed and added again, so their
+ * subtrees are neither re-indexed nor collapsed.
+ */
+public final class TreeChildren {
+
+  private TreeChildren() {}
+
+  /**
+   * Turn the current children into the updated ones, comparing items by identity. This takes at
+   * most one removal of the items that are not in the updated list, one insertion of the new items
+   * and, if the kept items are not in their new order or the new items are not one contiguous run,
+   * a sort that the list reports as a permutation. JavaFX lists offer no public way to group these
+   * into one change, but each of them is a single change however many items it touches, and the
+   * tree view lays out once for all of them on the next pulse.
+   *
+   * @param current the children list to change
+   * @param updated the children in their new order
+   */
+  public static <T> void update(ObservableList<TreeItem<T>> current, List<TreeItem<T>> updated) {
+
+    if (sameItems(current, updated)) {
+      return;
+    }
+
+    Set<TreeItem<T>> wanted = Collections.newSetFromMap(new IdentityHashMap<>(updated.size() * 2));
+    wanted.addAll(updated);
+    Set<TreeItem<T>> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+    for (var child : current) {
+      if (!wanted.contains(child)) {
+        removed.add(child);
+      }
+    }
+    if (!removed.isEmpty()) {
+      current.removeAll(removed);
+    }
+
+    Set<TreeItem<T>> kept = Collections.newSetFromMap(new IdentityHashMap<>(current.size() * 2));
+    kept.addAll(current);
+    var added = new ArrayList<TreeItem<T>>();
+    // where the new items start and whether they are one run between kept items in order
+    int first = -1;
+    boolean contiguous = true;
+    boolean ordered = true;
+    int k = 0;
+    for (int i = 0; i < updated.size(); i++) {
+      var item = updated.get(i);
+      if (kept.contains(item)) {
+        ordered &= current.get(k++) == item;
+      } else {
+        if (first < 0) {
+          first = i;
+        } else if (updated.get(i - 1) != added.getLast()) {
+          contiguous = false;
+        }
+        added.add(item);
+      }
+    }
+
+    if (ordered && contiguous) {
+      if (!added.isEmpty()) {
+        current.addAll(first, added);
+      }
+      return;
+    }
+
+    if (!added.isEmpty()) {
+      current.addAll(added);
+    }
+    var position = new IdentityHashMap<TreeItem<T>, Integer>(updated.size() * 2);
+    for (int i = 0; i < updated.size(); i++) {
+      position.put(updated.get(i), i);
+    }
+    current.sort(Comparator.comparingInt(position::get));
+  }
+
+  private static <T> boolean sameItems(List<TreeItem<T>> current, List<TreeItem<T>> updated) {
+    if (current.size() != updated.size()) {
+      return false;
+    }
+    for (int i = 0; i < current.size(); i++) {
+      if (current.get(i) != updated.get(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
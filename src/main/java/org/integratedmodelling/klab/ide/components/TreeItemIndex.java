@@ -0,0 +1,85 @@
+package org.integratedmodelling.klab.ide.components;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+import javafx.scene.control.TreeItem;
+
+/**
+ * Index of the items in a tree by a key taken from their values, such as the asset id or URN, so
+ * that the item for an asset is found in constant time instead of searching the tree. The index
+ * follows the tree by itself: it listens to the children modification events that bubble up to the
+ * root, adding the items inserted anywhere below it and removing those taken out, together with
+ * their descendants.
+ *
+ * <p>Children of {@link LazyTreeItem}s that are not loaded are never looked at, so the index only
+ * holds the items that have been made. Must be used on the FX thread.
+ *
+ * @param <T> the value type
+ * @param <K> the key type
+ */
+public class TreeItemIndex<T, K> {
+
+  private final Function<T, K> key;
+  private final Map<K, TreeItem<T>> items = new HashMap<>();
+  private TreeItem<T> root;
+
+  public TreeItemIndex(Function<T, K> key) {
+    this.key = key;
+  }
+
+  /** Index the tree under the passed root and follow its changes from now on. */
+  public void track(TreeItem<T> root) {
+    this.root = root;
+    items.clear();
+    add(root);
+    root.addEventHandler(
+        TreeItem.<T>childrenModificationEvent(),
+        event -> {
+          if (this.root != root) {
+            return;
+          }
+          for (var removed : event.getRemovedChildren()) {
+            remove(removed);
+          }
+          for (var added : event.getAddedChildren()) {
+            add(added);
+          }
+        });
+  }
+
+  public TreeItem<T> get(K key) {
+    return items.get(key);
+  }
+
+  public int size() {
+    return items.size();
+  }
+
+  private void add(TreeItem<T> item) {
+    if (item.getValue() != null) {
+      items.put(key.apply(item.getValue()), item);
+    }
+    if (isLoaded(item)) {
+      for (var child : item.getChildren()) {
+        add(child);
+      }
+    }
+  }
+
+  private void remove(TreeItem<T> item) {
+    if (item.getValue() != null) {
+      // only if not replaced by an item for the same key added elsewhere
+      items.remove(key.apply(item.getValue()), item);
+    }
+    if (isLoaded(item)) {
+      for (var child : item.getChildren()) {
+        remove(child);
+      }
+    }
+  }
+
+  private static boolean isLoaded(TreeItem<?> item) {
+    return !(item instanceof LazyTreeItem<?> lazy) || lazy.isLoaded();
+  }
+}
@@ -39,6 +39,23 @@ public class WorkspaceEditor extends EditorPage<NavigableAsset> {
   private TreeItem<NavigableAsset> root;
   private ProgressBar progressBar;
   private TreeView<NavigableAsset> treeView;
+  // the items made so far by asset URN
+  private final TreeItemIndex<NavigableAsset, String> items =
+      new TreeItemIndex<>(NavigableAsset::getUrn);
+
+  private final LazyTreeItem.Source<NavigableAsset> treeSource =
+      new LazyTreeItem.Source<>() {
+
+        @Override
+        public List<? extends NavigableAsset> children(NavigableAsset value) {
+          return value.children();
+        }
+
+        @Override
+        public boolean hasChildren(NavigableAsset value) {
+          return !value.children().isEmpty();
+        }
+      };
 
   public WorkspaceEditor(ResourcesService service, ResourceInfo resourceInfo, WorkspaceView view) {
     this.service = service;
@@ -79,7 +96,10 @@ public class WorkspaceEditor extends EditorPage<NavigableAsset> {
   @Override
   protected TreeView<NavigableAsset> createContentTree() {
 
-    treeView = new TreeView<>(this.root = defineTree(workspace));
+    var rootItem = defineTree(workspace);
+    treeView = new TreeView<>(this.root = rootItem);
+    rootItem.setSelection(treeView.getSelectionModel().selectedItemProperty());
+    items.track(root);
     treeView.setCellFactory(p -> new AssetTreeCell());
     treeView.getStyleClass().addAll(Tweaks.EDGE_TO_EDGE, Styles.DENSE);
     treeView.setShowRoot(false);
@@ -207,12 +227,9 @@ public class WorkspaceEditor extends EditorPage<NavigableAsset> {
     Platform.runLater(() -> this.progressBar.progressProperty().setValue(b ? -1d : 0d));
   }
 
-  private TreeItem<NavigableAsset> defineTree(NavigableAsset asset) {
-    var root = new TreeItem<>(asset);
-    for (var child : asset.children()) {
-      root.getChildren().add(defineTree(child));
-    }
-    return root;
+  /** Children are only made when the item is expanded. */
+  private LazyTreeItem<NavigableAsset> defineTree(NavigableAsset asset) {
+    return new LazyTreeItem<>(asset, treeSource);
   }
 
 //  @Override
@@ -369,7 +386,13 @@ public class WorkspaceEditor extends EditorPage<NavigableAsset> {
 
               var rootNode = findRootNode(asset);
               if (rootNode == null) {
-                findParentNode(asset).getChildren().add(defineTree(asset));
+                var parentNode = findParentNode(asset);
+                if (parentNode instanceof LazyTreeItem<NavigableAsset> lazy && !lazy.isLoaded()) {
+                  // the new asset is found when the parent is expanded
+                  lazy.invalidate();
+                } else if (parentNode != null) {
+                  parentNode.getChildren().add(defineTree(asset));
+                }
               } else if (status == RepositoryState.Status.REMOVED) {
                 rootNode.getParent().getChildren().remove(rootNode);
               } else {
@@ -384,27 +407,14 @@ public class WorkspaceEditor extends EditorPage<NavigableAsset> {
   private TreeItem<NavigableAsset> findParentNode(NavigableAsset asset) {
     var parent = asset.parent();
     if (parent != null) {
-      return findTreeNode(this.root, parent);
+      return items.get(parent.getUrn());
     }
     return this.root;
   }
 
-  private TreeItem<NavigableAsset> findTreeNode(
-      TreeItem<NavigableAsset> root, NavigableAsset asset) {
-    if (root.getValue().equals(asset)) {
-      return root;
-    }
-    for (TreeItem<NavigableAsset> child : root.getChildren()) {
-      var found = findTreeNode(child, asset);
-      if (found != null) {
-        return found;
-      }
-    }
-    return null;
-  }
-
+  /** Only finds the items made so far, without loading the children of unexpanded ones. */
   private TreeItem<NavigableAsset> findRootNode(NavigableAsset asset) {
-    return findTreeNode(this.root, asset);
+    return items.get(asset.getUrn());
   }
 
   private void updateTree(TreeItem<NavigableAsset> root, NavigableAsset changed) {
@@ -413,32 +423,31 @@ public class WorkspaceEditor extends EditorPage<NavigableAsset> {
 
       root.setValue(changed);
 
-      var existingChildren = new ArrayList<>(root.getChildren());
-      var newChildren = new ArrayList<>(changed.children());
-      var updatedChildren = new ArrayList<TreeItem<NavigableAsset>>();
+      if (root instanceof LazyTreeItem<NavigableAsset> lazy && !lazy.isLoaded()) {
+        // nothing shown below: the new children are made when expanded
+        lazy.invalidate();
+        return;
+      }
 
-      // Process children in order of new asset's children
+      // existing items by URN, reused for the children that are still there
+      var current = root.getChildren();
+      var existing = new HashMap<String, TreeItem<NavigableAsset>>(current.size() * 2);
+      for (var child : current) {
+        existing.put(child.getValue().getUrn(), child);
+      }
+      var newChildren = changed.children();
+      var updatedChildren = new ArrayList<TreeItem<NavigableAsset>>(newChildren.size());
       for (NavigableAsset newChild : newChildren) {
-        // Find existing child if present
-        var existingChild =
-            existingChildren.stream()
-                .filter(child -> child.getValue().equals(newChild))
-                .findFirst();
-
-        if (existingChild.isPresent()) {
-          // Update existing child
-          var child = existingChild.get();
+        var child = existing.remove(newChild.getUrn());
+        if (child != null) {
           updateTree(child, newChild);
-          updatedChildren.add(child);
         } else {
-          // Add new child
-          updatedChildren.add(defineTree(newChild));
+          child = defineTree(newChild);
         }
+        updatedChildren.add(child);
       }
 
-      // Replace all children with ordered list
-      root.getChildren().clear();
-      root.getChildren().addAll(updatedChildren);
+      TreeChildren.update(current, updatedChildren);
     }
   }
 
@@ -85,10 +85,18 @@ public class WorkspaceView extends BrowsablePage<WorkspaceEditor> {
   public List<ResourceInfo> getWorkspaceList() {
     List<ResourceInfo> ret = new ArrayList<>();
     for (var rService : getServices()) {
-      for (var workspace :
-          rService.capabilities(KlabIDEController.modeler().user()).getWorkspaceNames()) {
-        ret.add(rService.resourceInfo(workspace, KlabIDEController.modeler().user()));
-      }
+      ret.addAll(getWorkspaceList(rService));
+    }
+    return ret;
+  }
+
+  /** Blocking: call off the FX thread. */
+  public List<ResourceInfo> getWorkspaceList(ResourcesService rService) {
+    List<ResourceInfo> ret = new ArrayList<>();
+    var user = KlabIDEController.modeler().user();
+    var serviceInfo = KlabIDEController.instance().getServiceInfo();
+    for (var workspace : serviceInfo.capabilities(rService, user).getWorkspaceNames()) {
+      ret.add(serviceInfo.resourceInfo(rService, workspace, user));
     }
     return ret;
   }
@@ -104,10 +112,17 @@ public class WorkspaceView extends BrowsablePage<WorkspaceEditor> {
           if (workspaceDialog != null) {
             components.add(workspaceDialog);
           }
-          for (var workspace : getWorkspaceList()) {
-            components.add(new Components.Resource(workspace, this::raiseWorkspace));
-          }
           browserComponents.getChildren().addAll(components);
+          populateBrowser(
+              browserComponents,
+              components,
+              getServices(),
+              ResourcesService::getServiceName,
+              this::getWorkspaceList,
+              workspaces ->
+                  workspaces.stream()
+                      .map(workspace -> new Components.Resource(workspace, this::raiseWorkspace))
+                      .toList());
         });
 
     // TODO if we're empty and we only have one workspace, raise the workspace
@@ -124,7 +139,9 @@ public class WorkspaceView extends BrowsablePage<WorkspaceEditor> {
         KlabIDEController.modeler().user().getServices(ResourcesService.class).stream()
             .filter(
                 s ->
-                    s.capabilities(KlabIDEController.modeler().user())
+                    KlabIDEController.instance()
+                        .getServiceInfo()
+                        .capabilities(s, KlabIDEController.modeler().user())
                         .getPermissions()
                         .contains(CRUDOperation.CREATE))
             .toList();
@@ -197,6 +214,8 @@ public class WorkspaceView extends BrowsablePage<WorkspaceEditor> {
           KlabIDEController.modeler().user())) {
         KlabIDEController.instance().alert(Notification.error("Workspace creation failed"));
       }
+      // the new workspace is in the capabilities
+      KlabIDEController.instance().getServiceInfo().invalidate(service);
     }
   }
 
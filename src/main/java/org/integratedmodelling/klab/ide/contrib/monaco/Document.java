@@ -24,9 +24,17 @@
 package org.integratedmodelling.klab.ide.contrib.monaco;
 
 import javafx.beans.property.*;
+import javafx.beans.value.ObservableValue;
 import javafx.scene.web.WebEngine;
 import netscape.javascript.JSObject;
 
+/**
+ * The text shown in a {@link MonacoEditor}. Changes travel between Java and the editor as edits
+ * rather than as the whole text: each model content change is forwarded with the ranges it
+ * replaced and applied to a {@link PieceTable}, which also keeps the line count, and changes made
+ * from Java are sent to the editor as the smallest edit turning the old text into the new one, so
+ * that they do not reset the editor's undo history.
+ */
 public class Document {
 
   private WebEngine engine;
@@ -36,40 +44,74 @@ public class Document {
 
   private boolean updatingText;
 
-  private final StringProperty textProperty = new SimpleStringProperty();
+  private final PieceTable content = new PieceTable("");
+  private final TextProperty textProperty = new TextProperty();
   private final StringProperty languageProperty = new SimpleStringProperty();
-  private final IntegerProperty numberOfLinesProperty = new SimpleIntegerProperty();
+  private final IntegerProperty numberOfLinesProperty = new SimpleIntegerProperty(1);
 
   private JFunction jsfListener;
 
+  /**
+   * The text as a property, built from the edits only when read. Setting it applies the difference
+   * with the current text as an edit; binding it is not supported.
+   */
+  private final class TextProperty extends StringPropertyBase {
+
+    @Override
+    public String get() {
+      return content.getText();
+    }
+
+    @Override
+    public void set(String text) {
+      setText(text);
+    }
+
+    @Override
+    public void bind(ObservableValue<? extends String> observable) {
+      throw new UnsupportedOperationException("the document text cannot be bound");
+    }
+
+    @Override
+    public void bindBidirectional(Property<String> other) {
+      throw new UnsupportedOperationException("the document text cannot be bound");
+    }
+
+    @Override
+    public Object getBean() {
+      return Document.this;
+    }
+
+    @Override
+    public String getName() {
+      return "text";
+    }
+
+    void changed() {
+      fireValueChangedEvent();
+    }
+  }
+
   void setEditor(WebEngine engine, JSObject window, JSObject editor) {
     this.engine = engine;
     this.editor = editor;
     this.window = window;
 
     // initial text
-    editor.call("setValue", getText());
-
-    // text changes -> js
-    textProperty.addListener(
-        (ov) -> {
-          if (!updatingText) editor.call("setValue", getText());
-        });
+    try {
+      updatingText = true;
+      editor.call("setValue", getText());
+    } finally {
+      updatingText = false;
+    }
 
     // keep a global reference because it's garbage collected otherwise
     // fixme DOES NOT SEEM TO WORK
     jsfListener =
         new JFunction(
             args -> {
-              String text = (String) editor.call("getValue");
-              if (text != null) {
-                try {
-                  updatingText = true;
-                  textProperty().set(text);
-                } finally {
-                  updatingText = false;
-                }
-                numberOfLinesProperty.setValue(text.split("\\R").length);
+              if (!updatingText && args.length > 0 && args[0] instanceof JSObject event) {
+                applyChanges(event);
               }
               return null;
             });
@@ -78,26 +120,69 @@ public class Document {
     window.setMember("contentChangeListener", jsfListener);
   }
 
+  /**
+   * Apply the changes in a Monaco IModelContentChangedEvent. The offsets of all changes in an event
+   * refer to the text before it, and Monaco lists them from the end of the text backwards, so they
+   * can be applied in order. If the result does not match the length of the model, the text is
+   * read again from the editor.
+   */
+  private void applyChanges(JSObject event) {
+    var changes = (JSObject) event.getMember("changes");
+    int count = ((Number) changes.getMember("length")).intValue();
+    try {
+      for (int i = 0; i < count; i++) {
+        var change = (JSObject) changes.getSlot(i);
+        content.replace(
+            ((Number) change.getMember("rangeOffset")).intValue(),
+            ((Number) change.getMember("rangeLength")).intValue(),
+            (String) change.getMember("text"));
+      }
+    } catch (IndexOutOfBoundsException e) {
+      // out of sync: resynchronized below
+    }
+    var model = (JSObject) editor.call("getModel");
+    if (content.length() != ((Number) model.call("getValueLength")).intValue()) {
+      content.reset((String) editor.call("getValue"));
+    }
+    contentChanged();
+  }
+
+  private void contentChanged() {
+    textProperty.changed();
+    numberOfLinesProperty.set(content.getLineCount());
+  }
+
   public StringProperty textProperty() {
     return textProperty;
   }
 
-  public void setText(String text) {
-    if (editor == null) {
-      textProperty.set(text);
+  /**
+   * Replace the characters in [offset, offset + length) with the passed text. Once the editor is
+   * attached the edit goes through it, which keeps it in its undo history, and comes back to the
+   * document as a content change.
+   */
+  public void applyEdit(int offset, int length, String text) {
+    if (window == null) {
+      content.replace(offset, length, text);
+      contentChanged();
     } else {
-      try {
-        updatingText = true;
-        textProperty().set(text);
-      } finally {
-        updatingText = false;
-      }
-      editor.call("setValue", text);
+      window.call("applyEdit", offset, length, text);
+    }
+  }
+
+  /**
+   * Set the text, applying only the part that differs from the current one as an edit so that the
+   * editor keeps its undo history.
+   */
+  public void setText(String text) {
+    var edit = PieceTable.Edit.between(getText(), text == null ? "" : text);
+    if (edit != null) {
+      applyEdit(edit.offset(), edit.length(), edit.text());
     }
   }
 
   public String getText() {
-    return textProperty().get();
+    return content.getText();
   }
 
   public ReadOnlyIntegerProperty numberOfLinesProperty() {
@@ -122,6 +207,6 @@ public class Document {
    * @param text the text in editor is replaced byt this text
    */
   public void updateText(String text) {
-    window.call("updateText", text);
+    setText(text);
   }
 }
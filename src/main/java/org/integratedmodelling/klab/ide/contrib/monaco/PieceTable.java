@@ -0,0 +1,201 @@
+package org.integratedmodelling.klab.ide.contrib.monaco;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The text of a {@link Document} as a piece table: the text it was created with, an append-only
+ * buffer with everything inserted since, and the list of pieces of either buffer that make up the
+ * current text. Edits only split pieces and append to the buffer, so they cost the size of the edit
+ * plus a scan of the pieces rather than a copy of the whole text. The number of lines is kept
+ * current by counting the line breaks in the text inserted and removed.
+ *
+ * <p>Line breaks are counted as '\n', which also covers "\r\n"; the Monaco model normalizes its line
+ * endings to one of the two. The full text is only built when asked for and kept until the next
+ * edit.
+ */
+class PieceTable {
+
+  // past this the pieces are merged back into a single original buffer
+  private static final int MAX_PIECES = 2048;
+
+  private record Piece(boolean added, int start, int length, int lineBreaks) {}
+
+  /** Replacement of the characters in [offset, offset + length) with the text. */
+  record Edit(int offset, int length, String text) {
+
+    /**
+     * The smallest edit turning one text into the other: the common prefix and then the common
+     * suffix of what remains are left alone.
+     *
+     * @return the edit, or null if the texts are the same
+     */
+    static Edit between(String current, String text) {
+      int prefix = 0;
+      int max = Math.min(current.length(), text.length());
+      while (prefix < max && current.charAt(prefix) == text.charAt(prefix)) {
+        prefix++;
+      }
+      int suffix = 0;
+      max -= prefix;
+      while (suffix < max
+          && current.charAt(current.length() - 1 - suffix)
+              == text.charAt(text.length() - 1 - suffix)) {
+        suffix++;
+      }
+      if (prefix + suffix == current.length() && prefix + suffix == text.length()) {
+        return null;
+      }
+      return new Edit(
+          prefix,
+          current.length() - prefix - suffix,
+          text.substring(prefix, text.length() - suffix));
+    }
+  }
+
+  private String original;
+  private final StringBuilder added = new StringBuilder();
+  private final List<Piece> pieces = new ArrayList<>();
+  private int length;
+  private int lineBreaks;
+  private String text;
+
+  PieceTable(String text) {
+    reset(text);
+  }
+
+  /** Replace the whole text, e.g. when synchronizing with the editor from scratch. */
+  void reset(String text) {
+    original = text == null ? "" : text;
+    added.setLength(0);
+    pieces.clear();
+    length = original.length();
+    lineBreaks = countLineBreaks(original, 0, length);
+    if (length > 0) {
+      pieces.add(new Piece(false, 0, length, lineBreaks));
+    }
+    this.text = original;
+  }
+
+  /**
+   * Replace the characters in [offset, offset + length) with the passed text.
+   *
+   * @param offset
+   * @param length number of characters removed, 0 for a pure insertion
+   * @param text inserted, empty for a pure deletion
+   */
+  void replace(int offset, int length, String text) {
+    if (offset < 0 || length < 0 || offset + length > this.length) {
+      throw new IndexOutOfBoundsException(
+          "edit [" + offset + ", " + (offset + length) + ") outside text of length " + this.length);
+    }
+    if (length == 0 && text.isEmpty()) {
+      return;
+    }
+
+    int from = splitAt(offset);
+    int to = splitAt(offset + length);
+    var removed = pieces.subList(from, to);
+    for (var piece : removed) {
+      lineBreaks -= piece.lineBreaks();
+    }
+    removed.clear();
+
+    if (!text.isEmpty()) {
+      int inserted = countLineBreaks(text, 0, text.length());
+      var previous = from > 0 ? pieces.get(from - 1) : null;
+      if (previous != null
+          && previous.added()
+          && previous.start() + previous.length() == added.length()) {
+        // typing: keep growing the piece that ends where the buffer does
+        pieces.set(
+            from - 1,
+            new Piece(
+                true,
+                previous.start(),
+                previous.length() + text.length(),
+                previous.lineBreaks() + inserted));
+      } else {
+        pieces.add(from, new Piece(true, added.length(), text.length(), inserted));
+      }
+      added.append(text);
+      lineBreaks += inserted;
+    }
+
+    this.length += text.length() - length;
+    this.text = null;
+
+    if (pieces.size() > MAX_PIECES) {
+      reset(getText());
+    }
+  }
+
+  String getText() {
+    if (text == null) {
+      var ret = new StringBuilder(length);
+      for (var piece : pieces) {
+        ret.append(buffer(piece), piece.start(), piece.start() + piece.length());
+      }
+      text = ret.toString();
+    }
+    return text;
+  }
+
+  int length() {
+    return length;
+  }
+
+  int getLineCount() {
+    return lineBreaks + 1;
+  }
+
+  /** The number of pieces the text is made of, for testing. */
+  int getPieceCount() {
+    return pieces.size();
+  }
+
+  /**
+   * Make sure a piece starts at the passed offset, splitting the one containing it if necessary.
+   *
+   * @return the index of the piece starting at the offset, or the number of pieces if the offset is
+   *     the end of the text
+   */
+  private int splitAt(int offset) {
+    int position = 0;
+    for (int i = 0; i < pieces.size(); i++) {
+      var piece = pieces.get(i);
+      if (position == offset) {
+        return i;
+      }
+      if (offset < position + piece.length()) {
+        int head = offset - position;
+        int headBreaks = countLineBreaks(buffer(piece), piece.start(), piece.start() + head);
+        pieces.set(i, new Piece(piece.added(), piece.start(), head, headBreaks));
+        pieces.add(
+            i + 1,
+            new Piece(
+                piece.added(),
+                piece.start() + head,
+                piece.length() - head,
+                piece.lineBreaks() - headBreaks));
+        return i + 1;
+      }
+      position += piece.length();
+    }
+    return pieces.size();
+  }
+
+  private CharSequence buffer(Piece piece) {
+    return piece.added() ? added : original;
+  }
+
+  private static int countLineBreaks(CharSequence text, int start, int end) {
+    int ret = 0;
+    for (int i = start; i < end; i++) {
+      if (text.charAt(i) == '\n') {
+        ret++;
+      }
+    }
+    return ret;
+  }
+}
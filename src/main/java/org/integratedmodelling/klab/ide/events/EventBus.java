@@ -1,16 +1,24 @@
 package org.integratedmodelling.klab.ide.events;
 
 
+import javafx.application.Platform;
 import javafx.scene.input.KeyCodeCombination;
 import org.integratedmodelling.klab.ide.pages.Page;
 
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
-import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Consumer;
 
 /**
@@ -21,18 +29,35 @@ import java.util.function.Consumer;
  *
  * <p>You can use the default event bus instance {@link #getInstance}, which is a singleton,
  * or you can create one or multiple instances of {@link EventBus}.
+ *
+ * <p>Subscribers are called on the publisher's thread unless they subscribe with a {@link
+ * DeliveryPolicy}, in which case events are queued and delivered on the FX thread (coalesced into
+ * one {@link Platform#runLater(Runnable)} per pulse) or on a named executor. Queue depth and
+ * delivery latency for queued deliveries are tracked per event type, see {@link #getStatistics()}.
  */
 @SuppressWarnings({"unchecked", "rawtypes"})
 public final class EventBus {
 
     public abstract static class Event {
 
-        protected final UUID id = UUID.randomUUID();
+        /**
+         * Process-local epoch (time of first event class initialization) that qualifies the sequence numbers
+         * when events need to be told apart across runs, e.g. in logs.
+         */
+        public static final long EPOCH = System.currentTimeMillis();
+
+        private static final AtomicLong SEQUENCE = new AtomicLong();
+
+        protected final long id = SEQUENCE.incrementAndGet();
 
         protected Event() {
         }
 
-        public UUID getId() {
+        /**
+         * Monotonic identity of the event within this process. Cheaper than a random UUID, which
+         * would go through {@code SecureRandom} on every publish.
+         */
+        public long getId() {
             return id;
         }
 
@@ -44,18 +69,18 @@ public final class EventBus {
             if (!(o instanceof Event event)) {
                 return false;
             }
-            return id.equals(event.id);
+            return id == event.id;
         }
 
         @Override
         public int hashCode() {
-            return id.hashCode();
+            return Long.hashCode(id);
         }
 
         @Override
         public String toString() {
             return "Event{"
-                    + "id=" + id
+                    + "id=" + EPOCH + "-" + id
                     + '}';
         }
 
@@ -184,11 +209,157 @@ public final class EventBus {
         }
     }
 
+    /**
+     * Where and how an event is delivered to a subscriber. Use the predefined {@link #SYNCHRONOUS},
+     * {@link #FX_THREAD} and {@link #VIRTUAL_THREADS} policies or create a named one for a specific
+     * executor with {@link #executor(String, Executor)}.
+     */
+    public final static class DeliveryPolicy {
+
+        /** Deliver on the publisher's thread, before {@link #publish(Event)} returns. */
+        public static final DeliveryPolicy SYNCHRONOUS = new DeliveryPolicy("synchronous", null);
+
+        /**
+         * Deliver on the JavaFX application thread. All events queued for the FX thread between two
+         * pulses are delivered in order within a single {@link Platform#runLater(Runnable)}.
+         */
+        public static final DeliveryPolicy FX_THREAD = new DeliveryPolicy("fx", null);
+
+        /** Deliver each event on its own virtual thread. */
+        public static final DeliveryPolicy VIRTUAL_THREADS =
+                new DeliveryPolicy("virtual", Executors.newVirtualThreadPerTaskExecutor());
+
+        private final String name;
+        private final Executor executor;
+
+        private DeliveryPolicy(String name, Executor executor) {
+            this.name = name;
+            this.executor = executor;
+        }
+
+        public static DeliveryPolicy executor(String name, Executor executor) {
+            return new DeliveryPolicy(Objects.requireNonNull(name, "name"),
+                    Objects.requireNonNull(executor, "executor"));
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public String toString() {
+            return "DeliveryPolicy{"
+                    + "name=" + name
+                    + '}';
+        }
+    }
+
+    /**
+     * Counters for the queued (non-synchronous) deliveries of one event type. Latency is measured
+     * from {@link #publish(Event)} to the start of the subscriber call.
+     */
+    public final static class Statistics {
+
+        private final AtomicLong queueDepth = new AtomicLong();
+        private final LongAdder delivered = new LongAdder();
+        private final LongAdder totalLatencyNanos = new LongAdder();
+        private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+        private void enqueued() {
+            queueDepth.incrementAndGet();
+        }
+
+        private void delivered(long publishedNanos) {
+            long latency = System.nanoTime() - publishedNanos;
+            queueDepth.decrementAndGet();
+            delivered.increment();
+            totalLatencyNanos.add(latency);
+            maxLatencyNanos.accumulateAndGet(latency, Math::max);
+        }
+
+        /** Events published but not yet delivered. */
+        public long getQueueDepth() {
+            return queueDepth.get();
+        }
+
+        public long getDeliveredCount() {
+            return delivered.sum();
+        }
+
+        public double getAverageLatencyMillis() {
+            long count = delivered.sum();
+            return count == 0 ? 0 : totalLatencyNanos.sum() / (count * 1_000_000.0);
+        }
+
+        public double getMaxLatencyMillis() {
+            return maxLatencyNanos.get() / 1_000_000.0;
+        }
+
+        @Override
+        public String toString() {
+            return "Statistics{"
+                    + "queueDepth=" + getQueueDepth()
+                    + ", delivered=" + getDeliveredCount()
+                    + ", averageLatencyMs=" + getAverageLatencyMillis()
+                    + ", maxLatencyMs=" + getMaxLatencyMillis()
+                    + '}';
+        }
+    }
+
+    /**
+     * Wraps a subscriber registered with a non-synchronous policy. Unsubscribing with the original
+     * consumer removes the wrapper, see {@link #remove(Set, Consumer)}.
+     */
+    private final class QueuedSubscriber implements Consumer<Event> {
+
+        private final Consumer<Event> delegate;
+        private final DeliveryPolicy policy;
+
+        private QueuedSubscriber(Consumer<Event> delegate, DeliveryPolicy policy) {
+            this.delegate = delegate;
+            this.policy = policy;
+        }
+
+        @Override
+        public void accept(Event event) {
+            var statistics = getStatistics(event.getClass());
+            long published = System.nanoTime();
+            statistics.enqueued();
+            Runnable delivery = () -> {
+                statistics.delivered(published);
+                publish(event, delegate);
+            };
+            if (policy == DeliveryPolicy.FX_THREAD) {
+                fxQueue.add(delivery);
+                if (fxDrainScheduled.compareAndSet(false, true)) {
+                    Platform.runLater(EventBus.this::drainFxQueue);
+                }
+            } else {
+                policy.executor.execute(delivery);
+            }
+        }
+    }
+
     public EventBus() {
     }
 
+    private static final Consumer[] NO_SUBSCRIBERS = new Consumer[0];
+
     private final Map<Class<?>, Set<Consumer>> subscribers = new ConcurrentHashMap<>();
 
+    /**
+     * Resolved dispatch table: concrete event class to the flattened array of all subscribers
+     * registered for that class or any of its supertypes. Entries are computed lazily on first
+     * publish and the whole table is replaced on every subscription change, so publishing is a map
+     * lookup and an array walk. Replacing rather than clearing guarantees that a publisher racing
+     * with a subscription change can only populate the discarded table.
+     */
+    private volatile Map<Class<?>, Consumer[]> dispatchTable = new ConcurrentHashMap<>();
+
+    private final Map<Class<?>, Statistics> statistics = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Runnable> fxQueue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean fxDrainScheduled = new AtomicBoolean();
+
 //    @Override
     public <E extends Event> void subscribe(Class<? extends E> eventType, Consumer<E> subscriber) {
         Objects.requireNonNull(eventType);
@@ -196,22 +367,33 @@ public final class EventBus {
 
         Set<Consumer> eventSubscribers = getOrCreateSubscribers(eventType);
         eventSubscribers.add(subscriber);
+        invalidate();
     }
 
-    private <E> Set<Consumer> getOrCreateSubscribers(Class<E> eventType) {
-        Set<Consumer> eventSubscribers = subscribers.get(eventType);
-        if (eventSubscribers == null) {
-            eventSubscribers = new CopyOnWriteArraySet<>();
-            subscribers.put(eventType, eventSubscribers);
+    /**
+     * Subscribe with an explicit delivery policy. With {@link DeliveryPolicy#SYNCHRONOUS} this is
+     * the same as {@link #subscribe(Class, Consumer)}.
+     */
+    public <E extends Event> void subscribe(Class<? extends E> eventType, Consumer<E> subscriber,
+                                            DeliveryPolicy policy) {
+        Objects.requireNonNull(policy);
+        if (policy == DeliveryPolicy.SYNCHRONOUS) {
+            subscribe(eventType, subscriber);
+        } else {
+            subscribe(eventType, new QueuedSubscriber((Consumer<Event>) subscriber, policy));
         }
-        return eventSubscribers;
+    }
+
+    private <E> Set<Consumer> getOrCreateSubscribers(Class<E> eventType) {
+        return subscribers.computeIfAbsent(eventType, type -> new CopyOnWriteArraySet<>());
     }
 
 //    @Override
     public <E extends Event> void unsubscribe(Consumer<E> subscriber) {
         Objects.requireNonNull(subscriber);
 
-        subscribers.values().forEach(eventSubscribers -> eventSubscribers.remove(subscriber));
+        subscribers.values().forEach(eventSubscribers -> remove(eventSubscribers, subscriber));
+        invalidate();
     }
 
 //    @Override
@@ -219,21 +401,64 @@ public final class EventBus {
         Objects.requireNonNull(eventType);
         Objects.requireNonNull(subscriber);
 
-        subscribers.keySet().stream()
-                   .filter(eventType::isAssignableFrom)
-                   .map(subscribers::get)
-                   .forEach(eventSubscribers -> eventSubscribers.remove(subscriber));
+        for (var entry : subscribers.entrySet()) {
+            if (eventType.isAssignableFrom(entry.getKey())) {
+                remove(entry.getValue(), subscriber);
+            }
+        }
+        invalidate();
     }
 
 //    @Override
     public <E extends Event> void publish(E event) {
         Objects.requireNonNull(event);
 
-        Class<?> eventType = event.getClass();
-        subscribers.keySet().stream()
-                   .filter(type -> type.isAssignableFrom(eventType))
-                   .flatMap(type -> subscribers.get(type).stream())
-                   .forEach(subscriber -> publish(event, subscriber));
+        for (Consumer subscriber : dispatchTable.computeIfAbsent(event.getClass(), this::resolve)) {
+            publish(event, subscriber);
+        }
+    }
+
+    private static void remove(Set<Consumer> eventSubscribers, Consumer subscriber) {
+        eventSubscribers.removeIf(s -> s.equals(subscriber)
+                || (s instanceof QueuedSubscriber queued && queued.delegate.equals(subscriber)));
+    }
+
+    /**
+     * Delivery counters for all event types that have been published to at least one queued
+     * subscriber.
+     */
+    public Map<Class<?>, Statistics> getStatistics() {
+        return Map.copyOf(statistics);
+    }
+
+    public Statistics getStatistics(Class<? extends Event> eventType) {
+        return statistics.computeIfAbsent(eventType, type -> new Statistics());
+    }
+
+    private void drainFxQueue() {
+        fxDrainScheduled.set(false);
+        Runnable delivery;
+        while ((delivery = fxQueue.poll()) != null) {
+            delivery.run();
+        }
+    }
+
+    private void invalidate() {
+        dispatchTable = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Collect the subscribers for all registered types assignable from the passed concrete event
+     * class. Only called on a dispatch table miss.
+     */
+    private Consumer[] resolve(Class<?> eventType) {
+        List<Consumer> ret = new ArrayList<>();
+        for (var entry : subscribers.entrySet()) {
+            if (entry.getKey().isAssignableFrom(eventType)) {
+                ret.addAll(entry.getValue());
+            }
+        }
+        return ret.isEmpty() ? NO_SUBSCRIBERS : ret.toArray(NO_SUBSCRIBERS);
     }
 
     private <E extends Event> void publish(E event, Consumer<E> subscriber) {
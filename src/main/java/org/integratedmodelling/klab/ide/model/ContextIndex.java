@@ -0,0 +1,102 @@
+package org.integratedmodelling.klab.ide.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.integratedmodelling.klab.api.services.runtime.objects.ContextInfo;
+
+/**
+ * The digital twins (contexts) known on each runtime service, so that the digital twin browser can
+ * be shown without asking every service for its sessions each time it opens. A service's contexts
+ * are loaded once and then kept current from the IDE's own events: a closed scope is removed right
+ * away, while a new digital twin marks its service for reloading, as the notification carries the
+ * scope and not its descriptor. Listeners are called after each change, on the calling thread.
+ *
+ * <p>Contexts are loaded off the FX thread while events keep coming, so each service has a
+ * generation that every change increments: a loader reads it with {@link #generation(String)}
+ * before asking the service, and {@link #put(String, long, Collection)} drops the result if the
+ * generation moved meanwhile, instead of overwriting the change with what the service said before.
+ */
+public class ContextIndex {
+
+  // service id -> context id -> descriptor, only for the services loaded
+  private final Map<String, Map<String, ContextInfo>> contexts = new HashMap<>();
+  private final Map<String, Long> generations = new HashMap<>();
+  private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+
+  /** The contexts known for the service, or null if they must be loaded. */
+  public synchronized List<ContextInfo> get(String serviceId) {
+    var ret = contexts.get(serviceId);
+    return ret == null ? null : new ArrayList<>(ret.values());
+  }
+
+  /** The current generation of the service's contexts, to pass to {@link #put}. */
+  public synchronized long generation(String serviceId) {
+    return generations.computeIfAbsent(serviceId, id -> 0L);
+  }
+
+  /**
+   * Set the contexts of a service as retrieved from it, unless they changed since the generation
+   * was read. Does not notify listeners.
+   *
+   * @return false if the contexts were out of date and were not set
+   */
+  public synchronized boolean put(
+      String serviceId, long generation, Collection<ContextInfo> serviceContexts) {
+    if (generation(serviceId) != generation) {
+      return false;
+    }
+    var map = new LinkedHashMap<String, ContextInfo>();
+    for (var context : serviceContexts) {
+      map.put(context.getId(), context);
+    }
+    contexts.put(serviceId, map);
+    return true;
+  }
+
+  /** Forget the contexts of a service, so that they are loaded again when next needed. */
+  public void invalidate(String serviceId) {
+    boolean changed;
+    synchronized (this) {
+      // also when not loaded, as a load may be under way
+      generations.merge(serviceId, 1L, Long::sum);
+      changed = contexts.remove(serviceId) != null;
+    }
+    if (changed) {
+      notifyListeners();
+    }
+  }
+
+  /** Remove a context that was closed, wherever it was. */
+  public void remove(String contextId) {
+    boolean changed = false;
+    synchronized (this) {
+      for (var serviceContexts : contexts.values()) {
+        changed |= serviceContexts.remove(contextId) != null;
+      }
+      // a load under way for any service may still list the closed context
+      generations.replaceAll((serviceId, generation) -> generation + 1);
+    }
+    if (changed) {
+      notifyListeners();
+    }
+  }
+
+  public void addListener(Runnable listener) {
+    listeners.add(listener);
+  }
+
+  public void removeListener(Runnable listener) {
+    listeners.remove(listener);
+  }
+
+  private void notifyListeners() {
+    for (var listener : listeners) {
+      listener.run();
+    }
+  }
+}
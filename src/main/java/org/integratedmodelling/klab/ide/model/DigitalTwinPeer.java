@@ -1,17 +1,23 @@
 package org.integratedmodelling.klab.ide.model;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 import javafx.scene.Node;
 import javafx.scene.layout.Pane;
 import org.integratedmodelling.common.logging.Logging;
 import org.integratedmodelling.common.services.client.digitaltwin.ClientDigitalTwin;
+import org.integratedmodelling.common.services.client.digitaltwin.ClientKnowledgeGraph;
 import org.integratedmodelling.klab.api.data.RuntimeAsset;
 import org.integratedmodelling.klab.api.digitaltwin.GraphModel;
 import org.integratedmodelling.klab.api.knowledge.DescriptionType;
@@ -22,33 +28,103 @@ import org.integratedmodelling.klab.api.provenance.Activity;
 import org.integratedmodelling.klab.api.provenance.impl.ActivityImpl;
 import org.integratedmodelling.klab.api.scope.ContextScope;
 import org.integratedmodelling.klab.api.services.runtime.Message;
+import org.integratedmodelling.klab.ide.KlabIDEController;
+import org.integratedmodelling.klab.ide.api.ActivityGraph;
 import org.integratedmodelling.klab.ide.api.DigitalTwinViewer;
-import org.jgrapht.Graph;
-import org.jgrapht.graph.DefaultDirectedGraph;
-import org.jgrapht.graph.DefaultEdge;
+import org.integratedmodelling.klab.ide.api.GraphDelta;
 
 /**
  * We register context scopes with the IDE and use this class to manage all {@link
  * org.integratedmodelling.klab.ide.api.DigitalTwinViewer} objects linked to it.
  *
+ * <p>Messages from the digital twin go through a bounded {@link MessagePipeline} whose capacity
+ * and overflow policy are configured in the IDE settings, so that a busy runtime cannot make the
+ * backlog grow without limit. Knowledge graph and activity changes are not forwarded one by one:
+ * they mark the peer dirty and viewers get at most one refresh per {@link #REFRESH_WINDOW_MS}
+ * window, covering everything that changed in it. Each refresh is preceded by a {@link GraphDelta}
+ * computed once here from the committed transactions, so that viewers can update in proportion to
+ * the change.
+ *
+ * <p>All the peer's state is confined to the pipeline's worker thread: the refresh is a task
+ * scheduled on it, and registrations and focus changes are handed to it too, so viewers are only
+ * ever called from that thread, in order, and with no lock held. Each peer has its own worker, so
+ * a slow viewer can only delay the refreshes of its own digital twin.
+ *
  * <p>TODO this must store state and propagate to all newly registered widgets on registration. TODO
  * the event processing must be atomically synchronized with the registration
  */
 public class DigitalTwinPeer {
 
+  /** Coalescing window for knowledge graph and activity refreshes, about two frames at 60 Hz. */
+  public static final long REFRESH_WINDOW_MS = 33;
+
   private final ContextScope scope;
   private final Set<DigitalTwinViewer> viewers = Collections.synchronizedSet(new HashSet<>());
   private final ExecutorService executor = Executors.newSingleThreadExecutor();
+  private final MessagePipeline pipeline;
 
-  private Graph<Activity, DefaultEdge> activityGraph =
-      new DefaultDirectedGraph<>(DefaultEdge.class);
-  private HashMap<Long, Activity> activities = new HashMap<>();
+  // everything below is only used on the pipeline thread; each change to the activity graph
+  // publishes a new immutable version
+  private volatile ActivityGraph activityGraph = ActivityGraph.EMPTY;
+  private final HashMap<Long, Integer> activityIndex = new HashMap<>();
   private Schedule schedule;
+  private boolean refreshScheduled;
+  private boolean knowledgeGraphDirty;
+  private boolean activitiesDirty;
+  private final KnowledgeGraphDiffer knowledgeGraphDiffer = new KnowledgeGraphDiffer();
+  private long activityVersion;
+  private Map<Long, Activity> startedActivities = new LinkedHashMap<>();
+  private Map<Long, Activity> finishedActivities = new LinkedHashMap<>();
+  private List<GraphDelta.Edge<Activity, Void>> activityEdges = new ArrayList<>();
 
   public DigitalTwinPeer(ContextScope scope) {
     this.scope = scope;
+    int capacity = 4096;
+    var overflowPolicy = MessagePipeline.OverflowPolicy.COALESCE;
+    if (KlabIDEController.instance() != null
+        && KlabIDEController.instance().getSettings() != null) {
+      var settings = KlabIDEController.instance().getSettings();
+      capacity = settings.getDigitalTwinQueueCapacity().getValue();
+      try {
+        overflowPolicy =
+            MessagePipeline.OverflowPolicy.valueOf(
+                settings.getDigitalTwinQueueOverflow().getValue());
+      } catch (IllegalArgumentException e) {
+        Logging.INSTANCE.warn(
+            "Unknown digital twin queue overflow policy "
+                + settings.getDigitalTwinQueueOverflow().getValue()
+                + ": using "
+                + overflowPolicy);
+      }
+    }
+    this.pipeline =
+        new MessagePipeline("dt-peer-" + scope.getId(), capacity, overflowPolicy, this::processEvent);
+    if (scope.getDigitalTwin() != null
+        && scope.getDigitalTwin().getKnowledgeGraph() instanceof ClientKnowledgeGraph graph) {
+      // the only full pass over the graph: later changes come from the committed transactions
+      knowledgeGraphDiffer.reset(graph);
+    }
     if (scope.getDigitalTwin() instanceof ClientDigitalTwin clientDigitalTwin) {
-      clientDigitalTwin.addEventConsumer(message -> executor.execute(() -> processEvent(message)));
+      clientDigitalTwin.addEventConsumer(pipeline::offer);
+    }
+  }
+
+  /**
+   * The message pipeline, exposed for monitoring queue depth, dropped or coalesced messages and
+   * latencies.
+   */
+  public MessagePipeline getPipeline() {
+    return pipeline;
+  }
+
+  /** Fan out to all viewers. Only called on the pipeline thread. */
+  private void dispatch(Consumer<DigitalTwinViewer> action) {
+    DigitalTwinViewer[] targets;
+    synchronized (viewers) {
+      targets = viewers.toArray(new DigitalTwinViewer[0]);
+    }
+    for (var viewer : targets) {
+      action.accept(viewer);
     }
   }
 
@@ -62,8 +138,9 @@ public class DigitalTwinPeer {
 
     switch (message.getMessageType()) {
       case KnowledgeGraphCommitted -> {
-        //        var graph = message.getPayload(GraphModel.KnowledgeGraph.class);
-        executor.execute(() -> viewers.forEach(v -> v.knowledgeGraphModified()));
+        knowledgeGraphDiffer.commit(message.getPayload(GraphModel.KnowledgeGraph.class));
+        knowledgeGraphDirty = true;
+        scheduleRefresh();
       }
       case ContextualizationAborted, ContextualizationSuccessful, ContextualizationStarted -> {
         // TODO insert object, define aspect
@@ -76,50 +153,130 @@ public class DigitalTwinPeer {
       case ObservationSubmissionStarted -> {}
       case ObservationSubmissionFinished -> {
         var observation = message.getPayload(Observation.class);
-        executor.execute(() -> viewers.forEach(v -> v.submissionFinished(observation)));
+        flushRefresh();
+        dispatch(v -> v.submissionFinished(observation));
       }
       case ActivityFinished -> {
         var activity = message.getPayload(Activity.class);
-        // TODO update the existing activity in the graph
-        var existingActivity = activities.get(activity.getTransientId());
+        var index = activityIndex.get(activity.getTransientId());
+        var existingActivity = index == null ? null : activityGraph.getActivity(index);
         if (existingActivity instanceof ActivityImpl impl) {
           impl.setEnd(activity.getEnd());
           impl.setOutcome(activity.getOutcome());
+          activityGraph = activityGraph.touch();
+          if (!startedActivities.containsKey(activity.getTransientId())) {
+            finishedActivities.put(activity.getTransientId(), existingActivity);
+          }
         }
-        executor.execute(() -> viewers.forEach(v -> v.activitiesModified(activityGraph)));
+        activitiesDirty = true;
+        scheduleRefresh();
       }
       case ActivityStarted -> {
         var activity = message.getPayload(Activity.class);
-        activities.put(activity.getTransientId(), activity);
-        activityGraph.addVertex(activity);
         var parentActivity =
             activity.getMetadata().get(ActivityImpl.PARENT_ACTIVITY_TRANSIENT_ID_KEY, -1L);
-        if (parentActivity > 0) {
-          var activityParent = activities.get(parentActivity);
-          if (activityParent != null) {
-            activityGraph.addEdge(activityParent, activity);
-          }
+        var parentIndex = parentActivity > 0 ? activityIndex.get(parentActivity) : null;
+        activityIndex.put(activity.getTransientId(), activityGraph.size());
+        activityGraph =
+            activityGraph.withActivity(activity, parentIndex == null ? -1 : parentIndex);
+        startedActivities.put(activity.getTransientId(), activity);
+        if (parentIndex != null) {
+          activityEdges.add(
+              new GraphDelta.Edge<>(activityGraph.getActivity(parentIndex), activity, null));
         }
-        executor.execute(() -> viewers.forEach(v -> v.activitiesModified(activityGraph)));
+        activitiesDirty = true;
+        scheduleRefresh();
       }
       case ScheduleModified -> {
         this.schedule = message.getPayload(Schedule.class);
-        executor.execute(() -> viewers.forEach(v -> v.scheduleModified(schedule)));
+        flushRefresh();
+        dispatch(v -> v.scheduleModified(schedule));
       }
     }
 
     // TODO send to all sub-editors, widgets and the like
   }
 
+  private void scheduleRefresh() {
+    if (!refreshScheduled) {
+      refreshScheduled = pipeline.schedule(this::flushRefresh, REFRESH_WINDOW_MS);
+    }
+  }
+
+  /**
+   * Send one refresh for all the knowledge graph and activity changes accumulated since the last
+   * one. Runs on the pipeline thread, either as the scheduled refresh or before dispatching any
+   * other message, so that viewers never see later events before the changes that preceded them.
+   * A scheduled refresh finding nothing left to send does nothing.
+   */
+  private void flushRefresh() {
+    refreshScheduled = false;
+    if (knowledgeGraphDirty) {
+      knowledgeGraphDirty = false;
+      var delta = knowledgeGraphDiffer.delta();
+      if (!delta.isEmpty()) {
+        dispatch(v -> v.knowledgeGraphChanged(delta));
+      }
+      dispatch(DigitalTwinViewer::knowledgeGraphModified);
+    }
+    if (activitiesDirty) {
+      activitiesDirty = false;
+      var delta =
+          new GraphDelta<>(
+              ++activityVersion,
+              false,
+              List.copyOf(startedActivities.values()),
+              List.<Activity>of(),
+              List.copyOf(finishedActivities.values()),
+              activityEdges,
+              List.<GraphDelta.Edge<Activity, Void>>of());
+      startedActivities = new LinkedHashMap<>();
+      finishedActivities = new LinkedHashMap<>();
+      activityEdges = new ArrayList<>();
+      var graph = activityGraph;
+      dispatch(v -> v.activitiesChanged(delta));
+      dispatch(v -> v.activitiesModified(graph));
+    }
+  }
+
+  private GraphDelta<Activity, Void> activitySnapshot(ActivityGraph graph) {
+    var activities = new ArrayList<Activity>(graph.size());
+    var edges = new ArrayList<GraphDelta.Edge<Activity, Void>>();
+    for (int i = 0; i < graph.size(); i++) {
+      activities.add(graph.getActivity(i));
+      if (graph.getParent(i) >= 0) {
+        edges.add(
+            new GraphDelta.Edge<>(
+                graph.getActivity(graph.getParent(i)), graph.getActivity(i), null));
+      }
+    }
+    return new GraphDelta<>(
+        activityVersion, true, activities, List.of(), List.of(), edges, List.of());
+  }
+
   /**
    * Register a digital twin viewer. If the viewer extends {@link Pane} then it will be unregistered
    * automatically after calling its cleanup() function when the component is removed from the
    * scene. Otherwise be sure to unregister it manually.
    *
+   * <p>The viewer is added on the pipeline thread, where it first receives the state as of the last
+   * refresh and then every later change, so that it never sees a delta before its snapshot.
+   *
    * @param digitalTwinEditor
    */
   public void register(DigitalTwinViewer digitalTwinEditor) {
-    this.viewers.add(digitalTwinEditor);
+    pipeline.execute(
+        () -> {
+          digitalTwinEditor.knowledgeGraphChanged(knowledgeGraphDiffer.snapshot());
+          digitalTwinEditor.knowledgeGraphModified();
+          var graph = activityGraph;
+          digitalTwinEditor.activitiesChanged(activitySnapshot(graph));
+          digitalTwinEditor.activitiesModified(graph);
+          if (schedule != null) {
+            digitalTwinEditor.scheduleModified(schedule);
+          }
+          this.viewers.add(digitalTwinEditor);
+        });
     if (digitalTwinEditor instanceof Node pane) {
       // unregister self and the knowledge tree on destruction
       pane.parentProperty()
@@ -132,13 +289,6 @@ public class DigitalTwinPeer {
                 }
               });
     }
-
-    // TODO load any existing state into the new viewer
-    digitalTwinEditor.knowledgeGraphModified();
-    digitalTwinEditor.activitiesModified(activityGraph);
-    if (schedule != null) {
-      digitalTwinEditor.scheduleModified(schedule);
-    }
   }
 
   public void executeTask(Runnable task) {
@@ -146,6 +296,7 @@ public class DigitalTwinPeer {
   }
 
   public void cleanup() {
+    pipeline.shutdown();
     executor.shutdown();
   }
 
@@ -153,18 +304,25 @@ public class DigitalTwinPeer {
     if (asset instanceof Observation observation
         && observation.getObservable().is(SemanticType.COUNTABLE)
         && !observation.getObservable().getSemantics().isCollective()) {
-      executor.execute(() -> viewers.forEach(v -> v.setContext(observation)));
+      pipeline.execute(() -> dispatch(v -> v.setContext(observation)));
     }
   }
 
   public void closeScope() {
 
+    pipeline.shutdown();
+    try {
+      pipeline.awaitTermination(5000);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
     executor.submit(
         () -> {
           viewers.forEach(v -> {
             v.cleanup();
           });
           scope.close();
+          KlabIDEController.instance().getContextIndex().remove(scope.getId());
         });
     try {
       executor.awaitTermination(5, TimeUnit.SECONDS);
@@ -0,0 +1,642 @@
+package org.integratedmodelling.klab.ide.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import org.integratedmodelling.common.logging.Logging;
+
+/**
+ * Force-directed graph layout computed on its own worker thread, so that the JavaFX Application
+ * Thread only has to move the vertices. Vertices are identified by their index in the last graph
+ * passed to {@link #setGraph(int, int[], int[], double[], double[], double, double)}, and all
+ * state is kept in primitive arrays.
+ *
+ * <p>A graph can also be changed without restarting the layout with {@link #amend(double[],
+ * double[], int[], int[], int[], int[])}: vertices and edges are appended at the end and removed
+ * ones leave an inactive slot behind, so that the indices of all other vertices stay the same and
+ * the layout keeps its current positions and temperature.
+ *
+ * <p>Repulsion between all pairs of vertices is approximated with a Barnes-Hut quadtree, rebuilt
+ * at every iteration, so that each iteration costs O(n log n); attraction acts along the edges and
+ * a weak gravity keeps disconnected components in view. The simulation cools down and stops by
+ * itself; setting a new graph or calling {@link #resume()} restarts it.
+ *
+ * <p>Positions are published as immutable {@link Positions} at most once per frame interval and
+ * can be read from any thread with {@link #getPositions()}.
+ */
+public class ForceLayout {
+
+  /**
+   * Vertex coordinates computed for a given graph.
+   *
+   * @param generation the generation of the graph these positions refer to, incremented at each
+   *     {@link #setGraph(int, int[], int[], double[], double[], double, double)}
+   * @param version incremented at each publication
+   * @param settled true if the simulation has cooled down and these positions are final
+   * @param x
+   * @param y
+   */
+  public record Positions(
+      long generation, long version, boolean settled, double[] x, double[] y) {}
+
+  private static final double THETA = 0.8;
+  private static final double GRAVITY = 0.05;
+  private static final double INITIAL_TEMPERATURE = 0.1;
+  private static final double COOLING = 0.98;
+  private static final double MIN_TEMPERATURE = 0.001;
+  // starting temperature when all vertices have known positions: a few iterations to settle
+  private static final double WARM_TEMPERATURE = 0.0015;
+
+  private record Edit(
+      double[] x,
+      double[] y,
+      int[] removedVertices,
+      int[] sources,
+      int[] targets,
+      int[] removedEdges) {}
+
+  private record Graph(
+      long generation,
+      int size,
+      int[] sources,
+      int[] targets,
+      double[] x,
+      double[] y,
+      double width,
+      double height) {}
+
+  private final long frameIntervalNanos;
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition changed = lock.newCondition();
+  // written under the lock by the callers, taken by the worker
+  private Graph pendingGraph;
+  private List<Edit> pendingEdits = new ArrayList<>();
+  private boolean paused;
+  private boolean closed;
+  private boolean reheat;
+  private long generation;
+  private volatile Positions positions = new Positions(0, 0, true, new double[0], new double[0]);
+
+  // owned by the worker. Removed vertices are inactive; removed edges have source and target -1
+  private int n;
+  private int active;
+  private int edgeCount;
+  private int[] sources = new int[0];
+  private int[] targets = new int[0];
+  private boolean[] activeVertices = new boolean[0];
+  private double[] x = new double[0];
+  private double[] y = new double[0];
+  private double[] dx = new double[0];
+  private double[] dy = new double[0];
+  private double width;
+  private double height;
+  private double temperature;
+  private long currentGeneration;
+  private long version;
+  private final QuadTree tree = new QuadTree();
+
+  /**
+   * @param name name of the worker thread
+   * @param framesPerSecond maximum rate at which positions are published
+   */
+  public ForceLayout(String name, int framesPerSecond) {
+    this.frameIntervalNanos = TimeUnit.SECONDS.toNanos(1) / Math.max(1, framesPerSecond);
+    Thread.ofPlatform().name(name).daemon().start(this::run);
+  }
+
+  /**
+   * Replace the graph being laid out and restart the simulation. The arrays are copied. Vertices
+   * keep the passed coordinates as starting positions; pass NaN to have a vertex placed near a
+   * neighbour or at random. The simulation starts hotter the more vertices are new, so a graph
+   * with known positions settles in a few iterations.
+   *
+   * @param size number of vertices
+   * @param sources source vertex index of each edge
+   * @param targets target vertex index of each edge
+   * @param x initial x coordinates, one per vertex
+   * @param y initial y coordinates, one per vertex
+   * @param width width of the area to lay out in
+   * @param height height of the area to lay out in
+   * @return the generation of the new graph, matching {@link Positions#generation()}
+   */
+  public long setGraph(
+      int size,
+      int[] sources,
+      int[] targets,
+      double[] x,
+      double[] y,
+      double width,
+      double height) {
+    lock.lock();
+    try {
+      pendingGraph =
+          new Graph(
+              ++generation,
+              size,
+              sources.clone(),
+              targets.clone(),
+              x.clone(),
+              y.clone(),
+              width,
+              height);
+      // amendments refer to the graph being replaced
+      pendingEdits = new ArrayList<>();
+      changed.signal();
+      return generation;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Change the current graph in place, keeping the generation, the positions and the temperature
+   * of the layout, which is only warmed up as much as the new vertices need. The arrays are not
+   * copied and must not be modified after the call.
+   *
+   * @param x initial x coordinates of the vertices appended after the existing ones, NaN to have
+   *     them placed near a neighbour or at random
+   * @param y initial y coordinates of the appended vertices
+   * @param removedVertices indices of the vertices to remove; their slots stay in the positions but
+   *     take no further part in the layout
+   * @param sources source index of each appended edge
+   * @param targets target index of each appended edge
+   * @param removedEdges indices of the edges to remove, in the order edges were given
+   */
+  public void amend(
+      double[] x,
+      double[] y,
+      int[] removedVertices,
+      int[] sources,
+      int[] targets,
+      int[] removedEdges) {
+    lock.lock();
+    try {
+      pendingEdits.add(new Edit(x, y, removedVertices, sources, targets, removedEdges));
+      changed.signal();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** The latest published positions. */
+  public Positions getPositions() {
+    return positions;
+  }
+
+  public void pause() {
+    lock.lock();
+    try {
+      paused = true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Resume a paused layout, reheating it so that it moves again even if it had settled. */
+  public void resume() {
+    lock.lock();
+    try {
+      paused = false;
+      reheat = true;
+      changed.signal();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * True if a graph, an amendment or a reheat was passed and the worker has not taken it yet. When
+   * false, the positions published after the last change are already in {@link #getPositions()},
+   * and settled positions there are final until the next change.
+   */
+  public boolean hasPendingChanges() {
+    lock.lock();
+    try {
+      return pendingGraph != null || !pendingEdits.isEmpty() || reheat;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public boolean isPaused() {
+    lock.lock();
+    try {
+      return paused;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public void shutdown() {
+    lock.lock();
+    try {
+      closed = true;
+      changed.signal();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void run() {
+    long lastPublished = 0;
+    while (true) {
+      lock.lock();
+      try {
+        while (!closed
+            && pendingGraph == null
+            && pendingEdits.isEmpty()
+            && !reheat
+            && (paused || temperature < MIN_TEMPERATURE)) {
+          changed.await();
+        }
+        if (closed) {
+          return;
+        }
+        if (pendingGraph != null) {
+          load(pendingGraph);
+          pendingGraph = null;
+        }
+        boolean unsettled = false;
+        if (!pendingEdits.isEmpty()) {
+          for (var edit : pendingEdits) {
+            apply(edit);
+          }
+          pendingEdits = new ArrayList<>();
+          unsettled = true;
+        }
+        if (reheat) {
+          temperature = Math.max(temperature, INITIAL_TEMPERATURE);
+          reheat = false;
+          unsettled = true;
+        }
+        if (unsettled) {
+          // publish right away, so that a paused layout still places the new vertices and no
+          // change is taken while the last published positions still look settled
+          positions =
+              new Positions(
+                  currentGeneration, ++version, false, Arrays.copyOf(x, n), Arrays.copyOf(y, n));
+        }
+        if (paused) {
+          continue;
+        }
+      } catch (InterruptedException e) {
+        return;
+      } finally {
+        lock.unlock();
+      }
+
+      try {
+        step();
+      } catch (RuntimeException e) {
+        Logging.INSTANCE.error("Graph layout iteration failed", e);
+        temperature = 0;
+      }
+
+      long now = System.nanoTime();
+      if (now - lastPublished >= frameIntervalNanos || temperature < MIN_TEMPERATURE) {
+        positions =
+            new Positions(
+                currentGeneration,
+                ++version,
+                temperature < MIN_TEMPERATURE,
+                Arrays.copyOf(x, n),
+                Arrays.copyOf(y, n));
+        lastPublished = now;
+      }
+    }
+  }
+
+  private void load(Graph graph) {
+    n = graph.size();
+    active = n;
+    sources = graph.sources();
+    targets = graph.targets();
+    edgeCount = sources.length;
+    activeVertices = new boolean[n];
+    Arrays.fill(activeVertices, true);
+    width = Math.max(1, graph.width());
+    height = Math.max(1, graph.height());
+    currentGeneration = graph.generation();
+    x = graph.x();
+    y = graph.y();
+    dx = new double[n];
+    dy = new double[n];
+
+    int unplaced = 0;
+    for (int i = 0; i < n; i++) {
+      if (Double.isNaN(x[i]) || Double.isNaN(y[i])) {
+        unplaced++;
+      }
+    }
+
+    // unplaced vertices start next to an already placed neighbour, or anywhere in the view
+    for (int e = 0; e < sources.length; e++) {
+      place(targets[e], sources[e]);
+      place(sources[e], targets[e]);
+    }
+    for (int i = 0; i < n; i++) {
+      if (Double.isNaN(x[i]) || Double.isNaN(y[i])) {
+        x[i] = Math.random() * width;
+        y[i] = Math.random() * height;
+      }
+    }
+    // warm start: the fewer new vertices, the less the known ones need to move
+    temperature = n == 0 ? 0 : Math.max(WARM_TEMPERATURE, INITIAL_TEMPERATURE * unplaced / n);
+    // publish right away so that a paused layout still places the new vertices
+    positions =
+        new Positions(
+            currentGeneration, ++version, false, Arrays.copyOf(x, n), Arrays.copyOf(y, n));
+  }
+
+  private void apply(Edit edit) {
+    int first = n;
+    int added = edit.x().length;
+    ensureVertexCapacity(n + added);
+    int unplaced = 0;
+    for (int i = 0; i < added; i++) {
+      x[n] = edit.x()[i];
+      y[n] = edit.y()[i];
+      activeVertices[n++] = true;
+      if (Double.isNaN(edit.x()[i]) || Double.isNaN(edit.y()[i])) {
+        unplaced++;
+      }
+    }
+    active += added;
+    for (int vertex : edit.removedVertices()) {
+      if (activeVertices[vertex]) {
+        activeVertices[vertex] = false;
+        active--;
+      }
+    }
+    if (edgeCount + edit.sources().length > sources.length) {
+      int capacity = Math.max(edgeCount + edit.sources().length, sources.length * 2);
+      sources = Arrays.copyOf(sources, capacity);
+      targets = Arrays.copyOf(targets, capacity);
+    }
+    for (int e = 0; e < edit.sources().length; e++) {
+      sources[edgeCount] = edit.sources()[e];
+      targets[edgeCount++] = edit.targets()[e];
+      place(edit.targets()[e], edit.sources()[e]);
+      place(edit.sources()[e], edit.targets()[e]);
+    }
+    for (int e : edit.removedEdges()) {
+      sources[e] = -1;
+      targets[e] = -1;
+    }
+    for (int i = first; i < n; i++) {
+      if (Double.isNaN(x[i]) || Double.isNaN(y[i])) {
+        x[i] = Math.random() * width;
+        y[i] = Math.random() * height;
+      }
+    }
+    // same warm start as a new graph, but never cooler than the layout already is
+    if (active > 0) {
+      double warm = Math.max(WARM_TEMPERATURE, INITIAL_TEMPERATURE * unplaced / active);
+      temperature = Math.max(temperature, warm);
+    }
+  }
+
+  private void ensureVertexCapacity(int capacity) {
+    if (x.length >= capacity) {
+      return;
+    }
+    capacity = Math.max(capacity, x.length * 2);
+    x = Arrays.copyOf(x, capacity);
+    y = Arrays.copyOf(y, capacity);
+    dx = Arrays.copyOf(dx, capacity);
+    dy = Arrays.copyOf(dy, capacity);
+    activeVertices = Arrays.copyOf(activeVertices, capacity);
+  }
+
+  private void place(int vertex, int neighbour) {
+    if ((Double.isNaN(x[vertex]) || Double.isNaN(y[vertex]))
+        && !Double.isNaN(x[neighbour])
+        && !Double.isNaN(y[neighbour])) {
+      double angle = Math.random() * 2 * Math.PI;
+      x[vertex] = x[neighbour] + 30 * Math.cos(angle);
+      y[vertex] = y[neighbour] + 30 * Math.sin(angle);
+    }
+  }
+
+  /** One Fruchterman-Reingold iteration with Barnes-Hut repulsion. */
+  private void step() {
+    if (active == 0) {
+      temperature = 0;
+      return;
+    }
+
+    double k = Math.sqrt(width * height / active);
+    double k2 = k * k;
+
+    tree.build(x, y, activeVertices, n);
+    for (int i = 0; i < n; i++) {
+      dx[i] = 0;
+      dy[i] = 0;
+      if (activeVertices[i]) {
+        tree.repulse(i, x[i], y[i], k2, dx, dy);
+      }
+    }
+
+    for (int e = 0; e < edgeCount; e++) {
+      int s = sources[e];
+      int t = targets[e];
+      if (s == t || s < 0 || !activeVertices[s] || !activeVertices[t]) {
+        continue;
+      }
+      double ex = x[s] - x[t];
+      double ey = y[s] - y[t];
+      double distance = Math.max(0.01, Math.sqrt(ex * ex + ey * ey));
+      double force = distance / k;
+      dx[s] -= ex * force;
+      dy[s] -= ey * force;
+      dx[t] += ex * force;
+      dy[t] += ey * force;
+    }
+
+    double cx = width / 2;
+    double cy = height / 2;
+    double maxMove = temperature * Math.max(width, height);
+    for (int i = 0; i < n; i++) {
+      if (!activeVertices[i]) {
+        continue;
+      }
+      dx[i] += (cx - x[i]) * GRAVITY;
+      dy[i] += (cy - y[i]) * GRAVITY;
+      double length = Math.sqrt(dx[i] * dx[i] + dy[i] * dy[i]);
+      if (length > 0) {
+        double move = Math.min(length, maxMove);
+        x[i] += dx[i] / length * move;
+        y[i] += dy[i] / length * move;
+      }
+    }
+
+    temperature *= COOLING;
+  }
+
+  /**
+   * Quadtree over the vertex positions, stored in flat arrays that are reused across iterations.
+   * Each cell holds the total count and the centre of mass of the vertices below it; leaves hold
+   * a single vertex.
+   */
+  private static final class QuadTree {
+
+    private static final int EMPTY = -1;
+    // a cell with children has no vertex of its own
+    private static final int INTERNAL = -2;
+    // a cell at maximum depth holding several coincident vertices
+    private static final int COINCIDENT = -3;
+    private static final int MAX_DEPTH = 32;
+
+    private int cells;
+    private int[] children = new int[0]; // 4 per cell, EMPTY if none
+    private int[] vertex = new int[0]; // vertex index for leaves
+    private double[] mass = new double[0];
+    private double[] massX = new double[0];
+    private double[] massY = new double[0];
+    private double[] cellX = new double[0]; // cell origin
+    private double[] cellY = new double[0];
+    private double[] cellSize = new double[0];
+    private int[] stack = new int[0];
+
+    void build(double[] x, double[] y, boolean[] active, int n) {
+      double minX = Double.POSITIVE_INFINITY;
+      double minY = Double.POSITIVE_INFINITY;
+      double maxX = Double.NEGATIVE_INFINITY;
+      double maxY = Double.NEGATIVE_INFINITY;
+      for (int i = 0; i < n; i++) {
+        if (!active[i]) {
+          continue;
+        }
+        minX = Math.min(minX, x[i]);
+        minY = Math.min(minY, y[i]);
+        maxX = Math.max(maxX, x[i]);
+        maxY = Math.max(maxY, y[i]);
+      }
+      ensureCapacity(4 * n + 1);
+      cells = 0;
+      int root = newCell(minX, minY, Math.max(1, Math.max(maxX - minX, maxY - minY)));
+      for (int i = 0; i < n; i++) {
+        if (active[i]) {
+          insert(root, i, x, y, 0);
+        }
+      }
+    }
+
+    private void insert(int cell, int v, double[] x, double[] y, int depth) {
+      while (true) {
+        double total = mass[cell] + 1;
+        massX[cell] += (x[v] - massX[cell]) / total;
+        massY[cell] += (y[v] - massY[cell]) / total;
+        mass[cell] = total;
+
+        if (vertex[cell] == EMPTY && total == 1) {
+          vertex[cell] = v;
+          return;
+        }
+        if (depth >= MAX_DEPTH) {
+          // coincident vertices: keep them aggregated in this cell
+          vertex[cell] = COINCIDENT;
+          return;
+        }
+        if (vertex[cell] >= 0) {
+          // split the leaf, pushing its vertex one level down
+          int existing = vertex[cell];
+          vertex[cell] = INTERNAL;
+          int child = childFor(cell, x[existing], y[existing]);
+          mass[child] = 1;
+          massX[child] = x[existing];
+          massY[child] = y[existing];
+          vertex[child] = existing;
+        }
+        cell = childFor(cell, x[v], y[v]);
+        depth++;
+      }
+    }
+
+    private int childFor(int cell, double px, double py) {
+      double half = cellSize[cell] / 2;
+      int quadrant =
+          (px >= cellX[cell] + half ? 1 : 0) + (py >= cellY[cell] + half ? 2 : 0);
+      int slot = 4 * cell + quadrant;
+      if (children[slot] == EMPTY) {
+        children[slot] =
+            newCell(
+                cellX[cell] + ((quadrant & 1) != 0 ? half : 0),
+                cellY[cell] + ((quadrant & 2) != 0 ? half : 0),
+                half);
+      }
+      return children[slot];
+    }
+
+    /** Accumulate the repulsion of all other vertices on the vertex at (px, py). */
+    void repulse(int v, double px, double py, double k2, double[] dx, double[] dy) {
+      int top = 0;
+      stack[top++] = 0;
+      while (top > 0) {
+        int cell = stack[--top];
+        double ex = px - massX[cell];
+        double ey = py - massY[cell];
+        double d2 = ex * ex + ey * ey;
+        boolean leaf = vertex[cell] != INTERNAL;
+        if (vertex[cell] == v) {
+          continue;
+        }
+        if (leaf || cellSize[cell] * cellSize[cell] < THETA * THETA * d2) {
+          if (d2 < 0.0001) {
+            // coincident: push in a random direction
+            ex = Math.random() - 0.5;
+            ey = Math.random() - 0.5;
+            d2 = ex * ex + ey * ey;
+          }
+          double force = mass[cell] * k2 / d2;
+          dx[v] += ex * force;
+          dy[v] += ey * force;
+        } else {
+          for (int q = 0; q < 4; q++) {
+            int child = children[4 * cell + q];
+            if (child != EMPTY) {
+              stack[top++] = child;
+            }
+          }
+        }
+      }
+    }
+
+    private int newCell(double x, double y, double size) {
+      int cell = cells++;
+      if (cell >= vertex.length) {
+        ensureCapacity(cells * 2);
+      }
+      for (int q = 0; q < 4; q++) {
+        children[4 * cell + q] = EMPTY;
+      }
+      vertex[cell] = EMPTY;
+      mass[cell] = 0;
+      massX[cell] = 0;
+      massY[cell] = 0;
+      cellX[cell] = x;
+      cellY[cell] = y;
+      cellSize[cell] = size;
+      return cell;
+    }
+
+    private void ensureCapacity(int capacity) {
+      if (vertex.length >= capacity) {
+        return;
+      }
+      children = Arrays.copyOf(children, 4 * capacity);
+      vertex = Arrays.copyOf(vertex, capacity);
+      mass = Arrays.copyOf(mass, capacity);
+      massX = Arrays.copyOf(massX, capacity);
+      massY = Arrays.copyOf(massY, capacity);
+      cellX = Arrays.copyOf(cellX, capacity);
+      cellY = Arrays.copyOf(cellY, capacity);
+      cellSize = Arrays.copyOf(cellSize, capacity);
+      // at most 3 children pushed per popped cell
+      stack = Arrays.copyOf(stack, 3 * capacity + 4);
+    }
+  }
+}
@@ -0,0 +1,120 @@
+package org.integratedmodelling.klab.ide.model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.integratedmodelling.common.services.client.digitaltwin.ClientKnowledgeGraph;
+import org.integratedmodelling.klab.api.data.RuntimeAsset;
+import org.integratedmodelling.klab.api.digitaltwin.GraphModel;
+import org.integratedmodelling.klab.ide.api.GraphDelta;
+
+/**
+ * Builds the {@link GraphDelta}s of a digital twin's knowledge graph from the transactions committed
+ * to it, so that each delta costs in proportion to what was committed rather than to the size of
+ * the graph. The assets and relationships in each {@link GraphModel.KnowledgeGraph} commit payload
+ * are accumulated until {@link #delta()} is called; an asset whose id is already known is reported
+ * as updated. Commits only add to the graph, so deltas have no removals.
+ *
+ * <p>The state as of the last delta is kept by id, so that relationships can be resolved to their
+ * assets and new viewers can get it as a {@link #snapshot()}. Not thread-safe: the owning {@link
+ * DigitalTwinPeer} uses it on its pipeline thread only.
+ */
+class KnowledgeGraphDiffer {
+
+  private record EdgeKey(long source, long target, GraphModel.Relationship type) {}
+
+  // state as of the last delta
+  private final Map<Long, RuntimeAsset> assets = new HashMap<>();
+  private final Map<EdgeKey, GraphDelta.Edge<RuntimeAsset, GraphModel.Relationship>> edges =
+      new HashMap<>();
+  private long version;
+
+  // committed since the last delta
+  private Map<Long, RuntimeAsset> pendingAssets = new LinkedHashMap<>();
+  private Map<EdgeKey, GraphDelta.Edge<RuntimeAsset, GraphModel.Relationship>> pendingEdges =
+      new LinkedHashMap<>();
+
+  /**
+   * Start from the current content of the client knowledge graph. This is the only full pass over
+   * the graph, done once when the peer is created, before any commit is received.
+   */
+  void reset(ClientKnowledgeGraph knowledgeGraph) {
+    assets.clear();
+    edges.clear();
+    pendingAssets = new LinkedHashMap<>();
+    pendingEdges = new LinkedHashMap<>();
+    var graph = knowledgeGraph.getGraph();
+    for (var asset : graph.vertexSet()) {
+      assets.put(asset.getId(), asset);
+    }
+    for (var relationship : graph.edgeSet()) {
+      var source = graph.getEdgeSource(relationship);
+      var target = graph.getEdgeTarget(relationship);
+      edges.put(
+          new EdgeKey(source.getId(), target.getId(), relationship.relationship),
+          new GraphDelta.Edge<>(source, target, relationship.relationship));
+    }
+  }
+
+  /** Record the assets and relationships in a committed transaction. */
+  void commit(GraphModel.KnowledgeGraph transaction) {
+    if (transaction == null) {
+      return;
+    }
+    for (var asset : transaction.getNodes()) {
+      pendingAssets.put(asset.getId(), asset);
+    }
+    for (var link : transaction.getLinks()) {
+      var key = new EdgeKey(link.getSourceId(), link.getTargetId(), link.getRelationship());
+      if (edges.containsKey(key) || pendingEdges.containsKey(key)) {
+        continue;
+      }
+      var source = getAsset(link.getSourceId());
+      var target = getAsset(link.getTargetId());
+      if (source != null && target != null) {
+        pendingEdges.put(key, new GraphDelta.Edge<>(source, target, link.getRelationship()));
+      }
+    }
+  }
+
+  private RuntimeAsset getAsset(long id) {
+    var ret = pendingAssets.get(id);
+    return ret == null ? assets.get(id) : ret;
+  }
+
+  /** The changes committed since the last call, which become part of the known state. */
+  GraphDelta<RuntimeAsset, GraphModel.Relationship> delta() {
+    List<RuntimeAsset> added = new ArrayList<>();
+    List<RuntimeAsset> updated = new ArrayList<>();
+    for (var asset : pendingAssets.values()) {
+      (assets.put(asset.getId(), asset) == null ? added : updated).add(asset);
+    }
+    edges.putAll(pendingEdges);
+    var ret =
+        new GraphDelta<>(
+            ++version,
+            false,
+            added,
+            List.<RuntimeAsset>of(),
+            updated,
+            new ArrayList<>(pendingEdges.values()),
+            List.<GraphDelta.Edge<RuntimeAsset, GraphModel.Relationship>>of());
+    pendingAssets = new LinkedHashMap<>();
+    pendingEdges = new LinkedHashMap<>();
+    return ret;
+  }
+
+  /** The state as of the last delta, for newly registered viewers. */
+  GraphDelta<RuntimeAsset, GraphModel.Relationship> snapshot() {
+    return new GraphDelta<>(
+        version,
+        true,
+        new ArrayList<>(assets.values()),
+        List.of(),
+        List.of(),
+        new ArrayList<>(edges.values()),
+        List.of());
+  }
+}
@@ -0,0 +1,209 @@
+package org.integratedmodelling.klab.ide.model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.integratedmodelling.common.logging.Logging;
+
+/**
+ * Vertex positions of knowledge graph layouts, keyed by context scope id and asset id, so that a
+ * digital twin reopened in a later session starts from the layout it had instead of a random one.
+ *
+ * <p>Positions are kept as two floats packed into a long and written to a compact binary file:
+ * a header, then for each scope its id, the time it was saved and (asset id, x, y) triples. Only
+ * the most recently saved {@link #MAX_SCOPES} scopes are kept. The file is read in the background
+ * as soon as the store is created and rewritten in the background after changes, replacing the
+ * previous version atomically, so that no file I/O happens on the caller's thread (normally the FX
+ * thread). A seed requested before the file has been read finds no stored positions.
+ */
+public class LayoutStore {
+
+  private static final int MAGIC = 0x4B4C4159; // "KLAY"
+  private static final int FORMAT_VERSION = 1;
+  public static final int MAX_SCOPES = 64;
+
+  private static final ExecutorService writer =
+      Executors.newSingleThreadExecutor(
+          runnable -> Thread.ofPlatform().name("layout-store").daemon().unstarted(runnable));
+
+  private final File file;
+  // scope id -> (asset id -> packed position), least recently saved first
+  private final LinkedHashMap<String, Map<Long, Long>> layouts = new LinkedHashMap<>();
+  private final Map<String, Long> savedAt = new HashMap<>();
+  private final AtomicBoolean writeScheduled = new AtomicBoolean();
+
+  private record Entry(String scopeId, long savedAt, Map<Long, Long> layout) {}
+
+  public LayoutStore(File file) {
+    this.file = file;
+    // queued before any write, which therefore sees the stored layouts
+    writer.submit(this::load);
+  }
+
+  /**
+   * Fill in the positions of the vertices that have none (NaN) with those stored for the scope.
+   *
+   * @param scopeId
+   * @param ids asset id of each vertex
+   * @param x modified in place
+   * @param y modified in place
+   * @return the number of vertices that were given a stored position
+   */
+  public synchronized int seed(String scopeId, long[] ids, double[] x, double[] y) {
+    var layout = layouts.get(scopeId);
+    if (layout == null) {
+      return 0;
+    }
+    int ret = 0;
+    for (int i = 0; i < ids.length; i++) {
+      if (Double.isNaN(x[i]) || Double.isNaN(y[i])) {
+        var packed = layout.get(ids[i]);
+        if (packed != null) {
+          x[i] = Float.intBitsToFloat((int) (packed >>> 32));
+          y[i] = Float.intBitsToFloat((int) (long) packed);
+          ret++;
+        }
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * Record the positions of the passed vertices for the scope, keeping those of other assets
+   * already stored, and schedule a write.
+   */
+  public synchronized void save(String scopeId, long[] ids, double[] x, double[] y) {
+    var layout = layouts.remove(scopeId);
+    if (layout == null) {
+      layout = new HashMap<>();
+    }
+    for (int i = 0; i < ids.length; i++) {
+      if (!Double.isNaN(x[i]) && !Double.isNaN(y[i])) {
+        layout.put(ids[i], pack(x[i], y[i]));
+      }
+    }
+    // reinserted last as the most recent
+    layouts.put(scopeId, layout);
+    savedAt.put(scopeId, System.currentTimeMillis());
+    trim();
+    if (writeScheduled.compareAndSet(false, true)) {
+      writer.submit(this::write);
+    }
+  }
+
+  private static long pack(double x, double y) {
+    return ((long) Float.floatToRawIntBits((float) x) << 32)
+        | (Float.floatToRawIntBits((float) y) & 0xFFFFFFFFL);
+  }
+
+  private void trim() {
+    while (layouts.size() > MAX_SCOPES) {
+      var eldest = layouts.keySet().iterator().next();
+      layouts.remove(eldest);
+      savedAt.remove(eldest);
+    }
+  }
+
+  /**
+   * Read the file on the writer thread and merge it with what was saved in the meantime, which is
+   * more recent.
+   */
+  private void load() {
+    if (!file.exists()) {
+      return;
+    }
+    var stored = new ArrayList<Entry>();
+    try (var input =
+        new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+      if (input.readInt() != MAGIC || input.readInt() != FORMAT_VERSION) {
+        Logging.INSTANCE.warn("Ignoring unrecognized layout file " + file);
+        return;
+      }
+      int scopes = input.readInt();
+      for (int s = 0; s < scopes; s++) {
+        var scopeId = input.readUTF();
+        long time = input.readLong();
+        int count = input.readInt();
+        var layout = new HashMap<Long, Long>(count * 2);
+        for (int i = 0; i < count; i++) {
+          long id = input.readLong();
+          layout.put(id, pack(input.readFloat(), input.readFloat()));
+        }
+        stored.add(new Entry(scopeId, time, layout));
+      }
+    } catch (IOException e) {
+      Logging.INSTANCE.warn("Could not read layout file " + file + ": " + e.getMessage());
+      return;
+    }
+    synchronized (this) {
+      var saved = new LinkedHashMap<>(layouts);
+      layouts.clear();
+      for (var entry : stored) {
+        if (!saved.containsKey(entry.scopeId())) {
+          layouts.put(entry.scopeId(), entry.layout());
+          savedAt.put(entry.scopeId(), entry.savedAt());
+        }
+      }
+      layouts.putAll(saved);
+      trim();
+    }
+  }
+
+  private void write() {
+    writeScheduled.set(false);
+    // copied under the lock, written outside it so that seed() never waits for the disk
+    List<Entry> entries = new ArrayList<>();
+    synchronized (this) {
+      for (var entry : layouts.entrySet()) {
+        entries.add(
+            new Entry(
+                entry.getKey(),
+                savedAt.getOrDefault(entry.getKey(), 0L),
+                new HashMap<>(entry.getValue())));
+      }
+    }
+    var temporary = new File(file.getParentFile(), file.getName() + ".tmp");
+    try (var output =
+        new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary.toPath())))) {
+      output.writeInt(MAGIC);
+      output.writeInt(FORMAT_VERSION);
+      output.writeInt(entries.size());
+      for (var entry : entries) {
+        output.writeUTF(entry.scopeId());
+        output.writeLong(entry.savedAt());
+        output.writeInt(entry.layout().size());
+        for (var position : entry.layout().entrySet()) {
+          long packed = position.getValue();
+          output.writeLong(position.getKey());
+          output.writeFloat(Float.intBitsToFloat((int) (packed >>> 32)));
+          output.writeFloat(Float.intBitsToFloat((int) packed));
+        }
+      }
+    } catch (IOException e) {
+      Logging.INSTANCE.warn("Could not write layout file " + file + ": " + e.getMessage());
+      return;
+    }
+    try {
+      Files.move(
+          temporary.toPath(),
+          file.toPath(),
+          StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      Logging.INSTANCE.warn("Could not replace layout file " + file + ": " + e.getMessage());
+    }
+  }
+}
@@ -0,0 +1,372 @@
+package org.integratedmodelling.klab.ide.model;
+
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import org.integratedmodelling.common.logging.Logging;
+import org.integratedmodelling.klab.api.services.runtime.Message;
+
+/**
+ * Bounded, single-consumer message pipeline used by {@link DigitalTwinPeer} to decouple the
+ * digital twin event stream from the processing of its messages. Messages are kept in a fixed-size
+ * ring buffer; when it is full the {@link OverflowPolicy} decides whether the producer blocks, the
+ * oldest superseded message is dropped, or the new message replaces a queued one of the same {@link
+ * Message.MessageType}. Only messages of the coalescable types, whose latest instance carries all
+ * the information of the earlier ones, are ever dropped or replaced: lifecycle messages such as
+ * activity start and end, or knowledge graph commits, always make the producer wait for space.
+ *
+ * <p>Tasks can also be run on the worker thread, right away or after a delay, so that the owner can
+ * keep all of its state on one thread: tasks are never dropped, do not count against the capacity
+ * and run as soon as they are due, between two messages.
+ *
+ * <p>Queue depth, dropped and coalesced message counts and per-{@link Stage} latencies are kept
+ * for monitoring.
+ */
+public class MessagePipeline {
+
+  public enum OverflowPolicy {
+    /** The producer waits until there is space in the buffer. */
+    BLOCK,
+    /**
+     * The oldest queued message of a coalescable type is discarded to make room for the new one,
+     * provided a newer message of the same type is queued or is the new one. If there is none the
+     * producer blocks.
+     */
+    DROP_OLDEST,
+    /**
+     * A queued message of the same type is replaced by the new one if the type is coalescable,
+     * otherwise the producer blocks.
+     */
+    COALESCE
+  }
+
+  public enum Stage {
+    /** Time spent in the buffer, from offer to take. */
+    QUEUED,
+    /** Time spent processing the message, including the fan-out to viewers. */
+    PROCESSED
+  }
+
+  /**
+   * Message types whose latest instance supersedes any earlier one, so that coalescing or dropping
+   * them loses no information. Knowledge graph commits are not among them, as each carries only
+   * the assets committed in its transaction.
+   */
+  public static final Set<Message.MessageType> DEFAULT_COALESCABLE_TYPES =
+      EnumSet.of(Message.MessageType.ScheduleModified);
+
+  private record Task(long dueNanos, long sequence, Runnable action) {}
+
+  private final Message[] buffer;
+  private final long[] enqueued;
+  private final OverflowPolicy policy;
+  private final Set<Message.MessageType> coalescableTypes;
+  private final Consumer<Message> processor;
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition notEmpty = lock.newCondition();
+  private final Condition notFull = lock.newCondition();
+  private final Thread worker;
+  private int head;
+  private int size;
+  private boolean closed;
+  private boolean terminated;
+  private final PriorityQueue<Task> tasks =
+      new PriorityQueue<>(
+          Comparator.comparingLong(Task::dueNanos).thenComparingLong(Task::sequence));
+  private long taskSequence;
+
+  private final LongAdder dropped = new LongAdder();
+  private final LongAdder coalesced = new LongAdder();
+  private final LongAdder[] processedCount = newAdders();
+  private final LongAdder[] totalLatencyNanos = newAdders();
+  private final AtomicLong[] maxLatencyNanos = {new AtomicLong(), new AtomicLong()};
+
+  public MessagePipeline(
+      String name, int capacity, OverflowPolicy policy, Consumer<Message> processor) {
+    this(name, capacity, policy, DEFAULT_COALESCABLE_TYPES, processor);
+  }
+
+  public MessagePipeline(
+      String name,
+      int capacity,
+      OverflowPolicy policy,
+      Set<Message.MessageType> coalescableTypes,
+      Consumer<Message> processor) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("Message pipeline capacity must be positive");
+    }
+    this.buffer = new Message[capacity];
+    this.enqueued = new long[capacity];
+    this.policy = policy;
+    this.coalescableTypes = coalescableTypes;
+    this.processor = processor;
+    this.worker = Thread.ofPlatform().name(name).daemon().start(this::run);
+  }
+
+  /**
+   * Queue a message, applying the overflow policy if the buffer is full.
+   *
+   * @param message
+   * @return false if the message was not queued because the pipeline is closed or the calling
+   *     thread was interrupted while waiting for space
+   */
+  public boolean offer(Message message) {
+    lock.lock();
+    try {
+      while (!closed && size == buffer.length) {
+        if (policy == OverflowPolicy.DROP_OLDEST && dropOldest(message)) {
+          dropped.increment();
+        } else if (policy == OverflowPolicy.COALESCE && coalesce(message)) {
+          return true;
+        } else {
+          notFull.await();
+        }
+      }
+      if (closed) {
+        return false;
+      }
+      int tail = (head + size) % buffer.length;
+      buffer[tail] = message;
+      enqueued[tail] = System.nanoTime();
+      size++;
+      notEmpty.signal();
+      return true;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      dropped.increment();
+      return false;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Replace the most recent queued message of the same type, if the type allows it. */
+  private boolean coalesce(Message message) {
+    if (!coalescableTypes.contains(message.getMessageType())) {
+      return false;
+    }
+    for (int i = size - 1; i >= 0; i--) {
+      int index = (head + i) % buffer.length;
+      if (buffer[index].getMessageType() == message.getMessageType()) {
+        buffer[index] = message;
+        coalesced.increment();
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Remove the oldest queued message of a coalescable type that a newer one supersedes, either
+   * queued after it or the incoming message, so that the latest of each type is never lost.
+   */
+  private boolean dropOldest(Message incoming) {
+    for (int i = 0; i < size; i++) {
+      int index = (head + i) % buffer.length;
+      var type = buffer[index].getMessageType();
+      if (coalescableTypes.contains(type) && isSuperseded(type, i, incoming)) {
+        // close the gap by shifting the older messages one slot forward
+        for (int j = i; j > 0; j--) {
+          int to = (head + j) % buffer.length;
+          int from = (head + j - 1) % buffer.length;
+          buffer[to] = buffer[from];
+          enqueued[to] = enqueued[from];
+        }
+        buffer[head] = null;
+        head = (head + 1) % buffer.length;
+        size--;
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private boolean isSuperseded(Message.MessageType type, int position, Message incoming) {
+    if (incoming.getMessageType() == type) {
+      return true;
+    }
+    for (int i = position + 1; i < size; i++) {
+      if (buffer[(head + i) % buffer.length].getMessageType() == type) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Run a task on the worker thread as soon as it is done with the current message, ahead of the
+   * messages still queued. Tasks due at the same time run in the order they were submitted.
+   *
+   * @return false if the worker thread has terminated
+   */
+  public boolean execute(Runnable task) {
+    return schedule(task, 0);
+  }
+
+  /**
+   * Run a task on the worker thread once the delay has passed. Tasks are accepted until the worker
+   * terminates, so that processing the last messages after a shutdown can still schedule them; any
+   * task pending at that point runs right away.
+   *
+   * @return false if the worker thread has terminated
+   */
+  public boolean schedule(Runnable task, long delayMs) {
+    lock.lock();
+    try {
+      if (terminated) {
+        return false;
+      }
+      tasks.add(
+          new Task(
+              System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMs), taskSequence++, task));
+      notEmpty.signal();
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void run() {
+    while (true) {
+      Message message = null;
+      Runnable task = null;
+      long queuedAt = 0;
+      lock.lock();
+      try {
+        while (true) {
+          var next = tasks.peek();
+          long now = System.nanoTime();
+          if (next != null && (next.dueNanos() <= now || (closed && size == 0))) {
+            task = tasks.poll().action();
+            break;
+          }
+          if (size > 0) {
+            message = buffer[head];
+            queuedAt = enqueued[head];
+            buffer[head] = null;
+            head = (head + 1) % buffer.length;
+            size--;
+            notFull.signal();
+            break;
+          }
+          if (closed) {
+            terminated = true;
+            return;
+          }
+          if (next == null) {
+            notEmpty.awaitUninterruptibly();
+          } else {
+            try {
+              notEmpty.awaitNanos(next.dueNanos() - now);
+            } catch (InterruptedException e) {
+              // the worker only stops through shutdown()
+            }
+          }
+        }
+      } finally {
+        lock.unlock();
+      }
+
+      if (task != null) {
+        try {
+          task.run();
+        } catch (Throwable t) {
+          Logging.INSTANCE.error("Error running digital twin pipeline task", t);
+        }
+        continue;
+      }
+
+      long start = System.nanoTime();
+      record(Stage.QUEUED, start - queuedAt);
+      try {
+        processor.accept(message);
+      } catch (Throwable t) {
+        Logging.INSTANCE.error("Error processing digital twin message " + message, t);
+      }
+      record(Stage.PROCESSED, System.nanoTime() - start);
+    }
+  }
+
+  /**
+   * Stop accepting messages. Messages already queued are still processed, and pending tasks run,
+   * before the worker thread exits.
+   */
+  public void shutdown() {
+    lock.lock();
+    try {
+      closed = true;
+      notEmpty.signalAll();
+      notFull.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public boolean awaitTermination(long timeoutMs) throws InterruptedException {
+    worker.join(timeoutMs);
+    return !worker.isAlive();
+  }
+
+  private void record(Stage stage, long nanos) {
+    processedCount[stage.ordinal()].increment();
+    totalLatencyNanos[stage.ordinal()].add(nanos);
+    maxLatencyNanos[stage.ordinal()].accumulateAndGet(nanos, Math::max);
+  }
+
+  public int getQueueDepth() {
+    lock.lock();
+    try {
+      return size;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public int getCapacity() {
+    return buffer.length;
+  }
+
+  public long getDroppedCount() {
+    return dropped.sum();
+  }
+
+  public long getCoalescedCount() {
+    return coalesced.sum();
+  }
+
+  public double getAverageLatencyMillis(Stage stage) {
+    long count = processedCount[stage.ordinal()].sum();
+    return count == 0 ? 0 : totalLatencyNanos[stage.ordinal()].sum() / (count * 1_000_000.0);
+  }
+
+  public double getMaxLatencyMillis(Stage stage) {
+    return maxLatencyNanos[stage.ordinal()].get() / 1_000_000.0;
+  }
+
+  @Override
+  public String toString() {
+    return "MessagePipeline{"
+        + "queueDepth="
+        + getQueueDepth()
+        + ", dropped="
+        + getDroppedCount()
+        + ", coalesced="
+        + getCoalescedCount()
+        + ", queuedMs="
+        + getAverageLatencyMillis(Stage.QUEUED)
+        + ", processedMs="
+        + getAverageLatencyMillis(Stage.PROCESSED)
+        + '}';
+  }
+
+  private static LongAdder[] newAdders() {
+    return new LongAdder[] {new LongAdder(), new LongAdder()};
+  }
+}
@@ -0,0 +1,123 @@
+package org.integratedmodelling.klab.ide.model;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.integratedmodelling.common.services.client.digitaltwin.ClientKnowledgeGraph;
+import org.integratedmodelling.klab.api.data.RuntimeAsset;
+import org.integratedmodelling.klab.api.digitaltwin.GraphModel;
+import org.jgrapht.Graph;
+
+/**
+ * The assets reachable from a focal asset within a given number of steps along a chosen set of
+ * relationships, extracted breadth-first so that every asset is visited once and gets its shortest
+ * distance from the focus. Extraction stops adding assets when the node budget is reached, so that
+ * deep views on large digital twins stay bounded; {@link #isTruncated()} tells whether that
+ * happened.
+ */
+public class Neighbourhood {
+
+  /** Distance from the focus shown by the knowledge graph views until the user changes it. */
+  public static final int DEFAULT_DEPTH = 3;
+
+  /** Relationships followed by the knowledge graph views. */
+  public static final Set<GraphModel.Relationship> DEFAULT_RELATIONSHIPS =
+      Set.of(GraphModel.Relationship.HAS_CHILD);
+
+  /** Hard limit on the assets extracted for a focal asset, whatever the depth. */
+  public static final int MAX_ASSETS = 1000;
+
+  /** A relationship between two assets in the neighbourhood. */
+  public record Link(
+      RuntimeAsset source, RuntimeAsset target, ClientKnowledgeGraph.Relationship relationship) {}
+
+  private final Map<Long, RuntimeAsset> assets = new LinkedHashMap<>();
+  private final Map<Long, Integer> levels = new HashMap<>();
+  private final List<Link> links = new ArrayList<>();
+  private boolean truncated;
+
+  private Neighbourhood() {}
+
+  /**
+   * @param graph the knowledge graph
+   * @param focus the focal asset, which must be a vertex of the graph
+   * @param depth maximum distance from the focus
+   * @param relationships the relationships to follow (outgoing only)
+   * @param maxAssets maximum number of assets in the result, including the focus
+   * @return the neighbourhood
+   */
+  public static Neighbourhood extract(
+      Graph<RuntimeAsset, ClientKnowledgeGraph.Relationship> graph,
+      RuntimeAsset focus,
+      int depth,
+      Set<GraphModel.Relationship> relationships,
+      int maxAssets) {
+
+    var ret = new Neighbourhood();
+    long mask = 0;
+    for (var relationship : relationships) {
+      mask |= 1L << relationship.ordinal();
+    }
+
+    ret.assets.put(focus.getId(), focus);
+    ret.levels.put(focus.getId(), 0);
+    var frontier = new ArrayDeque<RuntimeAsset>();
+    frontier.add(focus);
+
+    for (int level = 1; level <= depth && !frontier.isEmpty(); level++) {
+      var next = new ArrayDeque<RuntimeAsset>();
+      for (var asset : frontier) {
+        for (var edge : graph.outgoingEdgesOf(asset)) {
+          if ((mask & (1L << edge.relationship.ordinal())) == 0) {
+            continue;
+          }
+          var target = graph.getEdgeTarget(edge);
+          if (!ret.assets.containsKey(target.getId())) {
+            if (ret.assets.size() >= maxAssets) {
+              ret.truncated = true;
+              continue;
+            }
+            ret.assets.put(target.getId(), target);
+            ret.levels.put(target.getId(), level);
+            next.add(target);
+          }
+          ret.links.add(new Link(asset, target, edge));
+        }
+      }
+      frontier = next;
+    }
+
+    return ret;
+  }
+
+  public boolean contains(long assetId) {
+    return assets.containsKey(assetId);
+  }
+
+  /** All assets in breadth-first order, starting with the focus. */
+  public Collection<RuntimeAsset> getAssets() {
+    return assets.values();
+  }
+
+  /** Distance of the asset from the focus, or -1 if not in the neighbourhood. */
+  public int getLevel(long assetId) {
+    return levels.getOrDefault(assetId, -1);
+  }
+
+  public List<Link> getLinks() {
+    return links;
+  }
+
+  public int size() {
+    return assets.size();
+  }
+
+  public boolean isTruncated() {
+    return truncated;
+  }
+}
@@ -0,0 +1,62 @@
+package org.integratedmodelling.klab.ide.model;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Runs the same blocking query against several services at once, each on its own virtual thread, so
+ * that hearing from all of them takes as long as the slowest one instead of the sum of all, and the
+ * answers can be shown as they arrive.
+ *
+ * <p>Each query has a timeout after which it is reported as failed. The call itself is left to end
+ * in the background, as service clients cannot be interrupted reliably. The callbacks run on the
+ * thread that completed the query, so UI code must hand them to the FX thread.
+ */
+public final class ServiceFanOut {
+
+  private static final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+  private ServiceFanOut() {}
+
+  /**
+   * @param services
+   * @param query called once per service
+   * @param timeout for each service
+   * @param onResult called with each service's answer as soon as it is available
+   * @param onFailure called with the exception thrown by the query or a {@link
+   *     java.util.concurrent.TimeoutException}
+   * @return a future completing when all services have answered or failed
+   */
+  public static <S, R> CompletableFuture<Void> query(
+      Collection<? extends S> services,
+      Function<S, R> query,
+      Duration timeout,
+      BiConsumer<S, R> onResult,
+      BiConsumer<S, Throwable> onFailure) {
+    var futures = new ArrayList<CompletableFuture<?>>(services.size());
+    for (S service : services) {
+      futures.add(
+          CompletableFuture.supplyAsync(() -> query.apply(service), executor)
+              .orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS)
+              .handle(
+                  (result, error) -> {
+                    if (error == null) {
+                      onResult.accept(service, result);
+                    } else {
+                      onFailure.accept(
+                          service, error instanceof CompletionException ? error.getCause() : error);
+                    }
+                    return null;
+                  }));
+    }
+    return CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new));
+  }
+}
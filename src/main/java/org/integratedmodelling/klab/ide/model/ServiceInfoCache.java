@@ -0,0 +1,154 @@
+package org.integratedmodelling.klab.ide.model;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.integratedmodelling.klab.api.scope.Scope;
+import org.integratedmodelling.klab.api.services.KlabService;
+import org.integratedmodelling.klab.api.services.ResourcesService;
+import org.integratedmodelling.klab.api.services.resources.ResourceInfo;
+
+/**
+ * Capabilities, status and resource descriptors of the services in use, kept for a limited time so
+ * that the views asking for them repeatedly do not call the services every time. Entries expire
+ * after a time-to-live counted from when they were loaded. Statuses are keyed by service id;
+ * capabilities and resource descriptors depend on the permissions of the asking user, so they are
+ * also keyed by the scope passed in. Status notifications only replace the status; what else is
+ * known about a service is dropped when it becomes operational or stops being so, or explicitly
+ * when the IDE learns that the service changed.
+ *
+ * <p>Loading is single-flight: when an entry is missing or expired, the first thread to ask calls
+ * the service and any other thread asking for the same entry meanwhile waits for that call instead
+ * of making its own. Failures are not cached.
+ */
+public class ServiceInfoCache {
+
+  public static final long CAPABILITIES_TTL_MS = TimeUnit.MINUTES.toMillis(1);
+  public static final long STATUS_TTL_MS = TimeUnit.SECONDS.toMillis(5);
+
+  private record Key(String serviceId, Scope scope, String urn) {}
+
+  private static final class Entry<T> {
+
+    final CompletableFuture<T> value = new CompletableFuture<>();
+    // set when the value is loaded; in-flight entries never expire
+    volatile long expiresAt = Long.MAX_VALUE;
+  }
+
+  private final ConcurrentHashMap<Key, Entry<KlabService.ServiceCapabilities>> capabilities =
+      new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<String, Entry<KlabService.ServiceStatus>> statuses =
+      new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<Key, Entry<ResourceInfo>> resourceInfo =
+      new ConcurrentHashMap<>();
+
+  public KlabService.ServiceCapabilities capabilities(KlabService service, Scope scope) {
+    return get(
+        capabilities,
+        new Key(service.serviceId(), scope, null),
+        CAPABILITIES_TTL_MS,
+        () -> service.capabilities(scope));
+  }
+
+  public KlabService.ServiceStatus status(KlabService service) {
+    var previous = statuses.get(service.serviceId());
+    var ret = get(statuses, service.serviceId(), STATUS_TTL_MS, service::status);
+    checkAvailability(service, previous, ret);
+    return ret;
+  }
+
+  public ResourceInfo resourceInfo(ResourcesService service, String urn, Scope scope) {
+    return get(
+        resourceInfo,
+        new Key(service.serviceId(), scope, urn),
+        CAPABILITIES_TTL_MS,
+        () -> service.resourceInfo(urn, scope));
+  }
+
+  /**
+   * Record a status received from the service, so that it is not asked for it. Capabilities and
+   * resource descriptors are only dropped if the service became operational or stopped being so.
+   */
+  public void putStatus(KlabService service, KlabService.ServiceStatus status) {
+    var entry = new Entry<KlabService.ServiceStatus>();
+    entry.value.complete(status);
+    entry.expiresAt = System.currentTimeMillis() + STATUS_TTL_MS;
+    checkAvailability(service, statuses.put(service.serviceId(), entry), status);
+  }
+
+  private void checkAvailability(
+      KlabService service,
+      Entry<KlabService.ServiceStatus> previous,
+      KlabService.ServiceStatus status) {
+    // expired statuses are still there to compare with; in-flight or failed ones tell nothing
+    if (previous != null
+        && previous.value.isDone()
+        && !previous.value.isCompletedExceptionally()
+        && previous.value.join().isOperational() != status.isOperational()) {
+      invalidateDescriptors(service.serviceId());
+    }
+  }
+
+  /** Forget everything known about a service. */
+  public void invalidate(KlabService service) {
+    statuses.remove(service.serviceId());
+    invalidateDescriptors(service.serviceId());
+  }
+
+  private void invalidateDescriptors(String serviceId) {
+    capabilities.keySet().removeIf(key -> key.serviceId().equals(serviceId));
+    resourceInfo.keySet().removeIf(key -> key.serviceId().equals(serviceId));
+  }
+
+  /**
+   * Have the status of all services asked again on next use, e.g. when the engine status changes.
+   * The old statuses are kept to tell whether availability changed.
+   */
+  public void invalidateStatus() {
+    for (var entry : statuses.values()) {
+      if (entry.value.isDone()) {
+        entry.expiresAt = 0;
+      }
+    }
+  }
+
+  private static <K, T> T get(
+      ConcurrentHashMap<K, Entry<T>> cache, K key, long ttl, Supplier<T> loader) {
+    while (true) {
+      var entry = cache.get(key);
+      if (entry != null && entry.expiresAt > System.currentTimeMillis()) {
+        return join(entry.value);
+      }
+      var loading = new Entry<T>();
+      boolean owner =
+          entry == null ? cache.putIfAbsent(key, loading) == null : cache.replace(key, entry, loading);
+      if (!owner) {
+        // another thread got there first: wait for its value
+        continue;
+      }
+      try {
+        var value = loader.get();
+        loading.expiresAt = System.currentTimeMillis() + ttl;
+        loading.value.complete(value);
+        return value;
+      } catch (RuntimeException | Error e) {
+        cache.remove(key, loading);
+        loading.value.completeExceptionally(e);
+        throw e;
+      }
+    }
+  }
+
+  private static <T> T join(CompletableFuture<T> future) {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException runtimeException) {
+        throw runtimeException;
+      }
+      throw e;
+    }
+  }
+}
@@ -0,0 +1,97 @@
+package org.integratedmodelling.klab.ide.model;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Map;
+import org.integratedmodelling.klab.api.scope.UserScope;
+import org.integratedmodelling.klab.api.services.KlabService;
+import org.integratedmodelling.klab.api.utils.Utils;
+
+/**
+ * The state of the services available to the user at one moment, built in a single pass that asks
+ * each service for its status once, so that all the indicators updated after an engine event are
+ * consistent with each other and cost one status call per service.
+ */
+public final class ServiceStatusSnapshot {
+
+  /**
+   * Counts for one service type.
+   *
+   * @param primary the service the user gets by default for the type, or null
+   * @param primaryOperational
+   * @param local number of services running on this machine
+   * @param remote number of services running elsewhere
+   * @param localOperational
+   * @param operational local and remote
+   */
+  public record TypeStatus(
+      KlabService primary,
+      boolean primaryOperational,
+      int local,
+      int remote,
+      int localOperational,
+      int operational) {
+
+    public int total() {
+      return local + remote;
+    }
+  }
+
+  private final Map<KlabService.Type, TypeStatus> types = new EnumMap<>(KlabService.Type.class);
+
+  private ServiceStatusSnapshot() {}
+
+  public static ServiceStatusSnapshot of(
+      UserScope user, ServiceInfoCache serviceInfo, Collection<KlabService.Type> serviceTypes) {
+    var ret = new ServiceStatusSnapshot();
+    for (var serviceType : serviceTypes) {
+      var primary = user.getService(serviceType.classify());
+      boolean primaryOperational = false;
+      int local = 0;
+      int remote = 0;
+      int localOperational = 0;
+      int operational = 0;
+      for (var service : user.getServices(serviceType.classify())) {
+        boolean isLocal = Utils.URLs.isLocalHost(service.getUrl());
+        boolean isOperational = serviceInfo.status(service).isOperational();
+        if (isLocal) {
+          local++;
+          if (isOperational) {
+            localOperational++;
+          }
+        } else {
+          remote++;
+        }
+        if (isOperational) {
+          operational++;
+          if (service == primary) {
+            primaryOperational = true;
+          }
+        }
+      }
+      if (primary != null && !primaryOperational && operational > 0) {
+        // the primary may be a different client object for one of the services listed
+        primaryOperational = serviceInfo.status(primary).isOperational();
+      }
+      ret.types.put(
+          serviceType,
+          new TypeStatus(
+              primary, primaryOperational, local, remote, localOperational, operational));
+    }
+    return ret;
+  }
+
+  /** The counts for a type, all zero if the type was not in the snapshot. */
+  public TypeStatus get(KlabService.Type serviceType) {
+    var ret = types.get(serviceType);
+    return ret == null ? new TypeStatus(null, false, 0, 0, 0, 0) : ret;
+  }
+
+  public int getLocalCount() {
+    return types.values().stream().mapToInt(TypeStatus::local).sum();
+  }
+
+  public int getLocalOperationalCount() {
+    return types.values().stream().mapToInt(TypeStatus::localOperational).sum();
+  }
+}
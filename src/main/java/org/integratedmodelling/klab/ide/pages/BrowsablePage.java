@@ -15,12 +15,20 @@ import javafx.scene.layout.HBox;
 import javafx.scene.layout.StackPane;
 import javafx.scene.layout.VBox;
 import org.integratedmodelling.common.logging.Logging;
+import org.integratedmodelling.klab.ide.KlabIDEController;
 import org.integratedmodelling.klab.ide.Theme;
+import org.integratedmodelling.klab.ide.components.Components;
 import org.integratedmodelling.klab.ide.components.IconLabel;
+import org.integratedmodelling.klab.ide.model.ServiceFanOut;
 import org.kordamp.ikonli.javafx.FontIcon;
 import org.kordamp.ikonli.material2.Material2MZ;
 
 import java.awt.*;
+import java.time.Duration;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
 
 /** The generic browser with a modal index on the left. */
 public abstract class BrowsablePage<T extends Node> extends StackPane implements Page {
@@ -43,6 +51,8 @@ public abstract class BrowsablePage<T extends Node> extends StackPane implements
 
   private final ModalPane modalPane = new ModalPane();
   private Dialog browserArea;
+  // incremented at each populateBrowser() so that late answers to previous ones are ignored
+  private int browserGeneration;
 
   protected BrowsablePage() {
     super();
@@ -110,6 +120,83 @@ public abstract class BrowsablePage<T extends Node> extends StackPane implements
 
   protected abstract void defineBrowser(VBox vBox);
 
+  /**
+   * Add the contents obtained from each service to the browser as they arrive, querying all the
+   * services in parallel. Each service has a placeholder until it answers, which stays with the
+   * reason if the service fails or takes longer than the configured timeout. Must be called on the
+   * FX thread.
+   *
+   * @param browser
+   * @param components the list of nodes added to the browser, updated as the contents arrive
+   * @param services in the order their contents should appear
+   * @param serviceName
+   * @param query called for each service on a virtual thread
+   * @param contents makes the nodes for a query result on the FX thread
+   */
+  protected <S, R> void populateBrowser(
+      VBox browser,
+      List<Node> components,
+      List<S> services,
+      Function<S, String> serviceName,
+      Function<S, R> query,
+      Function<R, List<? extends Node>> contents) {
+
+    int generation = ++browserGeneration;
+    var placeholders = new IdentityHashMap<S, Components.ServicePlaceholder>();
+    for (var service : services) {
+      var placeholder = new Components.ServicePlaceholder(serviceName.apply(service));
+      placeholders.put(service, placeholder);
+      components.add(placeholder);
+      browser.getChildren().add(placeholder);
+    }
+
+    var timeout =
+        Duration.ofSeconds(
+            KlabIDEController.instance().getSettings().getServiceQueryTimeout().getValue());
+    ServiceFanOut.query(
+        services,
+        query,
+        timeout,
+        (service, result) ->
+            Platform.runLater(
+                () -> {
+                  if (generation != browserGeneration) {
+                    return;
+                  }
+                  var placeholder = placeholders.get(service);
+                  var nodes = contents.apply(result);
+                  int index = browser.getChildren().indexOf(placeholder);
+                  if (index >= 0) {
+                    browser.getChildren().remove(index);
+                    browser.getChildren().addAll(index, nodes);
+                  }
+                  // same position as on screen, which removing the components relies on
+                  int position = components.indexOf(placeholder);
+                  if (position >= 0) {
+                    components.remove(position);
+                    components.addAll(position, nodes);
+                  } else {
+                    components.addAll(nodes);
+                  }
+                }),
+        (service, error) -> {
+          var reason =
+              error instanceof TimeoutException
+                  ? "timed out"
+                  : error.getMessage() == null
+                      ? error.getClass().getSimpleName()
+                      : error.getMessage();
+          Logging.INSTANCE.warn(
+              "Service " + serviceName.apply(service) + " did not answer: " + reason);
+          Platform.runLater(
+              () -> {
+                if (generation == browserGeneration) {
+                  placeholders.get(service).setFailed(reason);
+                }
+              });
+        });
+  }
+
   public void hideBrowser() {
     if (modalPane.contentProperty().isBound()) {
       return;
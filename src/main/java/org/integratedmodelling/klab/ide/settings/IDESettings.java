@@ -7,10 +7,21 @@ public class IDESettings extends Settings {
 
   public static final String PRIMARY_DISTRIBUTION = "klab.modeler.distribution.primary";
   public static final String START_SERVICES_ON_STARTUP = "klab.modeler.services.start";
+  public static final String DIGITAL_TWIN_QUEUE_CAPACITY = "klab.modeler.digitaltwin.queue.capacity";
+  public static final String DIGITAL_TWIN_QUEUE_OVERFLOW = "klab.modeler.digitaltwin.queue.overflow";
+  public static final String KNOWLEDGE_GRAPH_RENDERER = "klab.modeler.digitaltwin.renderer";
+  public static final String SERVICE_QUERY_TIMEOUT = "klab.modeler.services.timeout";
 
   private Setting<String> primaryDistribution = new Setting<>(PRIMARY_DISTRIBUTION, "source");
   private Setting<Boolean> startServicesOnStartup =
       new Setting<>(START_SERVICES_ON_STARTUP, Boolean.FALSE);
+  private Setting<Integer> digitalTwinQueueCapacity =
+      new Setting<>(DIGITAL_TWIN_QUEUE_CAPACITY, 4096);
+  private Setting<String> digitalTwinQueueOverflow =
+      new Setting<>(DIGITAL_TWIN_QUEUE_OVERFLOW, "COALESCE");
+  private Setting<String> knowledgeGraphRenderer =
+      new Setting<>(KNOWLEDGE_GRAPH_RENDERER, "smartgraph");
+  private Setting<Integer> serviceQueryTimeout = new Setting<>(SERVICE_QUERY_TIMEOUT, 10);
 
   public IDESettings() {
     super(Configuration.INSTANCE.getFile("modeler.toml"));
@@ -31,4 +42,39 @@ public class IDESettings extends Settings {
   public void setStartServicesOnStartup(Setting<Boolean> startServicesOnStartup) {
     this.startServicesOnStartup = startServicesOnStartup;
   }
+
+  public Setting<Integer> getDigitalTwinQueueCapacity() {
+    return digitalTwinQueueCapacity;
+  }
+
+  public void setDigitalTwinQueueCapacity(Setting<Integer> digitalTwinQueueCapacity) {
+    this.digitalTwinQueueCapacity = digitalTwinQueueCapacity;
+  }
+
+  /** Name of the digital twin message overflow policy: BLOCK, DROP_OLDEST or COALESCE. */
+  public Setting<String> getDigitalTwinQueueOverflow() {
+    return digitalTwinQueueOverflow;
+  }
+
+  public void setDigitalTwinQueueOverflow(Setting<String> digitalTwinQueueOverflow) {
+    this.digitalTwinQueueOverflow = digitalTwinQueueOverflow;
+  }
+
+  /** Knowledge graph renderer: "smartgraph" or "canvas". */
+  public Setting<String> getKnowledgeGraphRenderer() {
+    return knowledgeGraphRenderer;
+  }
+
+  public void setKnowledgeGraphRenderer(Setting<String> knowledgeGraphRenderer) {
+    this.knowledgeGraphRenderer = knowledgeGraphRenderer;
+  }
+
+  /** Seconds to wait for each service when listing workspaces or digital twins. */
+  public Setting<Integer> getServiceQueryTimeout() {
+    return serviceQueryTimeout;
+  }
+
+  public void setServiceQueryTimeout(Setting<Integer> serviceQueryTimeout) {
+    this.serviceQueryTimeout = serviceQueryTimeout;
+  }
 }
@@ -0,0 +1,82 @@
+package org.integratedmodelling.klab.ide.utils;
+
+/**
+ * Minimal immutable vector backed by a 32-way trie. {@link #append(Object)} and {@link #set(int,
+ * Object)} return a new vector that shares all but the O(log32 n) nodes on the modified path with
+ * the original, so versions can be published to other threads and read without locking or copying.
+ *
+ * @param <T> element type
+ */
+@SuppressWarnings("unchecked")
+public final class PersistentVector<T> {
+
+  private static final int BITS = 5;
+  private static final int WIDTH = 1 << BITS;
+  private static final int MASK = WIDTH - 1;
+  private static final PersistentVector<?> EMPTY = new PersistentVector<>(0, 0, new Object[WIDTH]);
+
+  private final int size;
+  // level of the root node; leaves are at level 0
+  private final int shift;
+  private final Object[] root;
+
+  private PersistentVector(int size, int shift, Object[] root) {
+    this.size = size;
+    this.shift = shift;
+    this.root = root;
+  }
+
+  public static <T> PersistentVector<T> empty() {
+    return (PersistentVector<T>) EMPTY;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public T get(int index) {
+    checkIndex(index);
+    Object[] node = root;
+    for (int level = shift; level > 0; level -= BITS) {
+      node = (Object[]) node[(index >>> level) & MASK];
+    }
+    return (T) node[index & MASK];
+  }
+
+  public PersistentVector<T> set(int index, T value) {
+    checkIndex(index);
+    return new PersistentVector<>(size, shift, copyPath(shift, root, index, value));
+  }
+
+  public PersistentVector<T> append(T value) {
+    if (size == 1 << (shift + BITS)) {
+      // root is full: grow the trie by one level
+      Object[] newRoot = new Object[WIDTH];
+      newRoot[0] = root;
+      return new PersistentVector<>(
+          size + 1, shift + BITS, copyPath(shift + BITS, newRoot, size, value));
+    }
+    return new PersistentVector<>(size + 1, shift, copyPath(shift, root, size, value));
+  }
+
+  private static Object[] copyPath(int level, Object[] node, int index, Object value) {
+    Object[] ret = node == null ? new Object[WIDTH] : node.clone();
+    if (level == 0) {
+      ret[index & MASK] = value;
+    } else {
+      int slot = (index >>> level) & MASK;
+      ret[slot] = copyPath(level - BITS, (Object[]) ret[slot], index, value);
+    }
+    return ret;
+  }
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+    }
+  }
+}
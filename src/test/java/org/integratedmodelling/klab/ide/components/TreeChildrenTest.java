@@ -0,0 +1,158 @@
+package org.integratedmodelling.klab.ide.components;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import javafx.scene.control.TreeItem;
+import org.junit.jupiter.api.Test;
+
+class TreeChildrenTest {
+
+  /** Children modification events seen on a parent, as the tree index sees them. */
+  private static class Events {
+
+    final List<TreeItem<String>> removed = new ArrayList<>();
+    final List<TreeItem<String>> added = new ArrayList<>();
+    int changes;
+    int permutations;
+
+    Events(TreeItem<String> parent) {
+      parent.addEventHandler(
+          TreeItem.<String>childrenModificationEvent(),
+          event -> {
+            changes++;
+            removed.addAll(event.getRemovedChildren());
+            added.addAll(event.getAddedChildren());
+            if (event.wasPermutated()) {
+              permutations++;
+            }
+          });
+    }
+  }
+
+  private static List<TreeItem<String>> items(String... values) {
+    var ret = new ArrayList<TreeItem<String>>();
+    for (var value : values) {
+      ret.add(new TreeItem<>(value));
+    }
+    return ret;
+  }
+
+  private static void assertSameItems(List<TreeItem<String>> expected, TreeItem<String> parent) {
+    assertEquals(expected.size(), parent.getChildren().size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertSame(expected.get(i), parent.getChildren().get(i));
+    }
+  }
+
+  @Test
+  void sameItemsMakeNoChange() {
+    var parent = new TreeItem<String>();
+    var children = items("a", "b", "c");
+    parent.getChildren().setAll(children);
+    var events = new Events(parent);
+
+    TreeChildren.update(parent.getChildren(), new ArrayList<>(children));
+    assertEquals(0, events.changes);
+  }
+
+  @Test
+  void oneRunOfNewItemsIsOneInsertion() {
+    var parent = new TreeItem<String>();
+    var children = items("a", "d");
+    parent.getChildren().setAll(children);
+    var events = new Events(parent);
+
+    var updated = new ArrayList<>(children);
+    updated.addAll(1, items("b", "c"));
+    TreeChildren.update(parent.getChildren(), updated);
+
+    assertSameItems(updated, parent);
+    assertEquals(1, events.changes);
+    assertEquals(updated.subList(1, 3), events.added);
+    assertTrue(events.removed.isEmpty());
+  }
+
+  @Test
+  void removalsAndInsertionsLeaveKeptItemsAlone() {
+    var parent = new TreeItem<String>();
+    var children = items("a", "b", "c", "d", "e");
+    parent.getChildren().setAll(children);
+    var events = new Events(parent);
+
+    var updated =
+        List.of(
+            new TreeItem<>("new"),
+            children.get(0),
+            children.get(2),
+            new TreeItem<>("other"),
+            children.get(4));
+    TreeChildren.update(parent.getChildren(), updated);
+
+    assertSameItems(updated, parent);
+    assertEquals(List.of(children.get(1), children.get(3)), events.removed);
+    assertEquals(2, events.added.size());
+    // one removal, one insertion and the permutation that puts the two new items in place
+    assertEquals(3, events.changes);
+  }
+
+  @Test
+  void movedItemsArePermutedNotReplaced() {
+    var parent = new TreeItem<String>();
+    var children = items("a", "b", "c", "d");
+    parent.getChildren().setAll(children);
+    var grandchild = new TreeItem<>("child of b");
+    children.get(1).getChildren().add(grandchild);
+    var events = new Events(parent);
+
+    var updated = List.of(children.get(3), children.get(1), children.get(0), children.get(2));
+    TreeChildren.update(parent.getChildren(), updated);
+
+    assertSameItems(updated, parent);
+    assertTrue(events.removed.isEmpty());
+    assertTrue(events.added.isEmpty());
+    assertEquals(1, events.permutations);
+    assertSame(children.get(1), grandchild.getParent());
+  }
+
+  @Test
+  void randomUpdatesNeverRemoveKeptItems() {
+    var random = new Random(11);
+    var parent = new TreeItem<String>();
+    parent.getChildren().setAll(items("0", "1", "2", "3", "4", "5", "6", "7"));
+    var events = new Events(parent);
+    int made = 8;
+    for (int round = 0; round < 2000; round++) {
+      var updated = new ArrayList<TreeItem<String>>();
+      for (var child : parent.getChildren()) {
+        if (random.nextInt(5) > 0) {
+          updated.add(child);
+        }
+      }
+      if (random.nextBoolean()) {
+        Collections.shuffle(updated.subList(0, random.nextInt(updated.size() + 1)), random);
+      }
+      for (int i = random.nextInt(4); i > 0; i--) {
+        updated.add(random.nextInt(updated.size() + 1), new TreeItem<>(Integer.toString(made++)));
+      }
+      var kept = new ArrayList<>(updated);
+      kept.retainAll(parent.getChildren());
+      events.removed.clear();
+      events.changes = 0;
+
+      TreeChildren.update(parent.getChildren(), updated);
+
+      assertSameItems(updated, parent);
+      for (var item : kept) {
+        assertFalse(events.removed.contains(item));
+      }
+      assertTrue(events.changes <= 3);
+    }
+  }
+}
@@ -0,0 +1,225 @@
+package org.integratedmodelling.klab.ide.contrib.monaco;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class PieceTableTest {
+
+  private static int lineCount(CharSequence text) {
+    int ret = 1;
+    for (int i = 0; i < text.length(); i++) {
+      if (text.charAt(i) == '\n') {
+        ret++;
+      }
+    }
+    return ret;
+  }
+
+  private static void assertMatches(CharSequence expected, PieceTable table) {
+    assertEquals(expected.toString(), table.getText());
+    assertEquals(expected.length(), table.length());
+    assertEquals(lineCount(expected), table.getLineCount());
+  }
+
+  /** Apply the edit to the text, as the editor would. */
+  private static String apply(String text, PieceTable.Edit edit) {
+    return new StringBuilder(text)
+        .replace(edit.offset(), edit.offset() + edit.length(), edit.text())
+        .toString();
+  }
+
+  @Test
+  void emptyTextHasOneLine() {
+    assertMatches("", new PieceTable(""));
+    assertMatches("", new PieceTable(null));
+  }
+
+  @Test
+  void insertDeleteAndReplace() {
+    var table = new PieceTable("hello\nworld");
+    var reference = new StringBuilder("hello\nworld");
+
+    table.replace(5, 0, ",\nbig");
+    reference.replace(5, 5, ",\nbig");
+    assertMatches(reference, table);
+
+    table.replace(0, 6, "");
+    reference.replace(0, 6, "");
+    assertMatches(reference, table);
+
+    table.replace(2, 4, "X\n\nY");
+    reference.replace(2, 6, "X\n\nY");
+    assertMatches(reference, table);
+
+    table.replace(reference.length(), 0, "!");
+    reference.append("!");
+    assertMatches(reference, table);
+
+    table.replace(0, reference.length(), "");
+    assertMatches("", table);
+  }
+
+  @Test
+  void crlfCountsOneLineBreak() {
+    var table = new PieceTable("a\r\nb\r\nc");
+    assertEquals(3, table.getLineCount());
+
+    // splitting a CRLF leaves the line break with the '\n'
+    table.replace(2, 0, "x");
+    assertMatches("a\rx\nb\r\nc", table);
+    table.replace(1, 1, "");
+    assertMatches("ax\nb\r\nc", table);
+    table.replace(4, 2, "\r\n\r\n");
+    assertMatches("ax\nb\r\n\r\nc", table);
+  }
+
+  @Test
+  void typingGrowsOnePiece() {
+    var table = new PieceTable("begin end");
+    var reference = new StringBuilder("begin end");
+    int offset = 6;
+    for (char c : "typed\nline".toCharArray()) {
+      table.replace(offset, 0, String.valueOf(c));
+      reference.insert(offset++, c);
+    }
+    assertMatches(reference, table);
+    // original head, one added piece, original tail
+    assertEquals(3, table.getPieceCount());
+
+    // deleting with backspace shortens the same piece
+    table.replace(--offset, 1, "");
+    reference.deleteCharAt(offset);
+    assertMatches(reference, table);
+  }
+
+  @Test
+  void tooManyPiecesAreMergedBack() {
+    var table = new PieceTable("0123456789");
+    var reference = new StringBuilder("0123456789");
+    // insertions at alternating ends never extend the previous piece
+    for (int i = 0; i < 3000; i++) {
+      int offset = i % 2 == 0 ? 0 : reference.length();
+      var text = (i % 7 == 0) ? "\n" : Integer.toString(i % 10);
+      table.replace(offset, 0, text);
+      reference.insert(offset, text);
+      assertTrue(table.getPieceCount() <= 2048);
+    }
+    assertMatches(reference, table);
+
+    // still editable after the merge
+    table.replace(3, 10, "merged");
+    reference.replace(3, 13, "merged");
+    assertMatches(reference, table);
+  }
+
+  @Test
+  void randomEditsMatchReference() {
+    var random = new Random(42);
+    var alphabet = "ab\n\r".toCharArray();
+    var reference = new StringBuilder("initial\ntext\r\n");
+    var table = new PieceTable(reference.toString());
+    for (int i = 0; i < 5000; i++) {
+      int offset = random.nextInt(reference.length() + 1);
+      int length = random.nextInt(Math.min(8, reference.length() - offset) + 1);
+      var text = new StringBuilder();
+      for (int k = random.nextInt(6); k > 0; k--) {
+        text.append(alphabet[random.nextInt(alphabet.length)]);
+      }
+      table.replace(offset, length, text.toString());
+      reference.replace(offset, offset + length, text.toString());
+      assertEquals(reference.length(), table.length());
+      assertEquals(lineCount(reference), table.getLineCount());
+      if (i % 100 == 0) {
+        assertEquals(reference.toString(), table.getText());
+      }
+    }
+    assertMatches(reference, table);
+  }
+
+  @Test
+  void editsOutsideTheTextAreRejected() {
+    var table = new PieceTable("abc");
+    assertThrows(IndexOutOfBoundsException.class, () -> table.replace(2, 2, ""));
+    assertThrows(IndexOutOfBoundsException.class, () -> table.replace(-1, 0, "x"));
+    assertThrows(IndexOutOfBoundsException.class, () -> table.replace(4, 0, "x"));
+    assertMatches("abc", table);
+  }
+
+  @Test
+  void resetReplacesEverything() {
+    var table = new PieceTable("old");
+    table.replace(3, 0, " text");
+    table.reset("new\ntext");
+    assertMatches("new\ntext", table);
+    table.replace(0, 3, "");
+    assertMatches("\ntext", table);
+  }
+
+  @Test
+  void sameTextNeedsNoEdit() {
+    assertNull(PieceTable.Edit.between("", ""));
+    assertNull(PieceTable.Edit.between("same\r\n", "same\r\n"));
+  }
+
+  @Test
+  void editCoversOnlyTheDifference() {
+    assertEquals(new PieceTable.Edit(3, 0, "X"), PieceTable.Edit.between("abcdef", "abcXdef"));
+    assertEquals(new PieceTable.Edit(2, 2, ""), PieceTable.Edit.between("abcdef", "abef"));
+    assertEquals(new PieceTable.Edit(1, 1, "Z"), PieceTable.Edit.between("abc", "aZc"));
+    assertEquals(new PieceTable.Edit(0, 0, "text"), PieceTable.Edit.between("", "text"));
+    assertEquals(new PieceTable.Edit(0, 4, ""), PieceTable.Edit.between("text", ""));
+    // converting line endings only touches the '\r'
+    assertEquals(new PieceTable.Edit(1, 1, ""), PieceTable.Edit.between("a\r\nb", "a\nb"));
+  }
+
+  @Test
+  void prefixAndSuffixDoNotOverlap() {
+    // with repeated characters the suffix must not reuse what the prefix matched
+    assertEquals(new PieceTable.Edit(3, 0, "a"), PieceTable.Edit.between("aaa", "aaaa"));
+    assertEquals(new PieceTable.Edit(3, 1, ""), PieceTable.Edit.between("aaaa", "aaa"));
+    assertEquals(new PieceTable.Edit(3, 3, ""), PieceTable.Edit.between("abcabc", "abc"));
+    assertEquals(new PieceTable.Edit(4, 0, "ab"), PieceTable.Edit.between("abab", "ababab"));
+  }
+
+  @Test
+  void randomEditsAreMinimal() {
+    var random = new Random(7);
+    var alphabet = "ab\n".toCharArray();
+    for (int i = 0; i < 2000; i++) {
+      var current = randomText(random, alphabet, 12);
+      var text = randomText(random, alphabet, 12);
+      var edit = PieceTable.Edit.between(current, text);
+      if (current.equals(text)) {
+        assertNull(edit);
+        continue;
+      }
+      assertEquals(text, apply(current, edit));
+      // nothing left in common at either end of the replaced range
+      int removedEnd = edit.offset() + edit.length();
+      assertTrue(
+          edit.length() == 0
+              || edit.text().isEmpty()
+              || (current.charAt(edit.offset()) != edit.text().charAt(0)
+                  && current.charAt(removedEnd - 1)
+                      != edit.text().charAt(edit.text().length() - 1)));
+
+      // and applying it to a piece table gives the same result
+      var table = new PieceTable(current);
+      table.replace(edit.offset(), edit.length(), edit.text());
+      assertMatches(text, table);
+    }
+  }
+
+  private static String randomText(Random random, char[] alphabet, int maxLength) {
+    var ret = new StringBuilder();
+    for (int k = random.nextInt(maxLength + 1); k > 0; k--) {
+      ret.append(alphabet[random.nextInt(alphabet.length)]);
+    }
+    return ret.toString();
+  }
+}
@@ -0,0 +1,98 @@
+package org.integratedmodelling.klab.ide.events;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Creation and publish throughput of events identified by the process-wide sequence, against
+ * events that also draw a random UUID in their constructor as {@link EventBus.Event} used to. The
+ * UUID events pay for the sequence too, so the difference is a lower bound on what the change
+ * saves. The contended variants publish from four threads, where {@code SecureRandom} serializes.
+ *
+ * <p>The benchmarks are compiled with the tests and run with JMH's main class:
+ *
+ * <pre>
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/classpath.txt
+ * java -cp target/test-classes:target/classes:$(cat target/classpath.txt) \
+ *     org.openjdk.jmh.Main EventBusBenchmark
+ * </pre>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EventBusBenchmark {
+
+  public static final class SequenceEvent extends EventBus.Event {}
+
+  /** An event identified the way they were before, by a random UUID. */
+  public static final class UuidEvent extends EventBus.Event {
+
+    private final UUID uuid = UUID.randomUUID();
+
+    @Override
+    public boolean equals(Object o) {
+      return this == o || (o instanceof UuidEvent event && uuid.equals(event.uuid));
+    }
+
+    @Override
+    public int hashCode() {
+      return uuid.hashCode();
+    }
+  }
+
+  private EventBus bus;
+  private volatile EventBus.Event delivered;
+
+  @Setup
+  public void setup() {
+    bus = new EventBus();
+    bus.subscribe(SequenceEvent.class, event -> delivered = event);
+    bus.subscribe(UuidEvent.class, event -> delivered = event);
+  }
+
+  @Benchmark
+  public EventBus.Event createSequenceEvent() {
+    return new SequenceEvent();
+  }
+
+  @Benchmark
+  public EventBus.Event createUuidEvent() {
+    return new UuidEvent();
+  }
+
+  @Benchmark
+  public void publishSequenceEvent() {
+    bus.publish(new SequenceEvent());
+  }
+
+  @Benchmark
+  public void publishUuidEvent() {
+    bus.publish(new UuidEvent());
+  }
+
+  @Benchmark
+  @Threads(4)
+  public void publishSequenceEventContended() {
+    bus.publish(new SequenceEvent());
+  }
+
+  @Benchmark
+  @Threads(4)
+  public void publishUuidEventContended() {
+    bus.publish(new UuidEvent());
+  }
+}
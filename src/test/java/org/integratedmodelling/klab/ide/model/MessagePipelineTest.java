@@ -0,0 +1,301 @@
+package org.integratedmodelling.klab.ide.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.integratedmodelling.klab.api.services.runtime.Message;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class MessagePipelineTest {
+
+  /**
+   * Processor that holds the worker on the first message until released, so that the tests can
+   * fill the buffer deterministically.
+   */
+  private static class GatedProcessor implements java.util.function.Consumer<Message> {
+
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final List<Message> processed = new ArrayList<>();
+
+    @Override
+    public void accept(Message message) {
+      started.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      synchronized (processed) {
+        processed.add(message);
+      }
+    }
+
+    List<Message> processed() {
+      synchronized (processed) {
+        return new ArrayList<>(processed);
+      }
+    }
+  }
+
+  private final GatedProcessor processor = new GatedProcessor();
+  private MessagePipeline pipeline;
+
+  @AfterEach
+  void tearDown() throws InterruptedException {
+    processor.release.countDown();
+    if (pipeline != null) {
+      pipeline.shutdown();
+      assertTrue(pipeline.awaitTermination(5000));
+    }
+  }
+
+  private static Message message(Message.MessageType type, String name) {
+    return (Message)
+        Proxy.newProxyInstance(
+            Message.class.getClassLoader(),
+            new Class<?>[] {Message.class},
+            (proxy, method, args) ->
+                switch (method.getName()) {
+                  case "getMessageType" -> type;
+                  case "toString" -> name;
+                  case "hashCode" -> System.identityHashCode(proxy);
+                  case "equals" -> proxy == args[0];
+                  default -> null;
+                });
+  }
+
+  /** Start the pipeline and wait until the worker is held on the first message. */
+  private void start(int capacity, MessagePipeline.OverflowPolicy policy, Message first)
+      throws InterruptedException {
+    pipeline = new MessagePipeline("test", capacity, policy, processor);
+    assertTrue(pipeline.offer(first));
+    assertTrue(processor.started.await(5, TimeUnit.SECONDS));
+  }
+
+  /** Offer on another thread, storing the result of the offer when it returns. */
+  private Thread offerInBackground(Message message, AtomicBoolean result) {
+    var thread = new Thread(() -> result.set(pipeline.offer(message)));
+    thread.start();
+    return thread;
+  }
+
+  private void assertBlocked(Thread thread) throws InterruptedException {
+    thread.join(200);
+    assertTrue(thread.isAlive(), "producer should be waiting for space");
+  }
+
+  private List<Message> drain() throws InterruptedException {
+    processor.release.countDown();
+    pipeline.shutdown();
+    assertTrue(pipeline.awaitTermination(5000));
+    return processor.processed();
+  }
+
+  @Test
+  void blockWaitsForSpaceAndKeepsOrder() throws InterruptedException {
+    var first = message(Message.MessageType.ActivityStarted, "first");
+    var second = message(Message.MessageType.ActivityStarted, "second");
+    var third = message(Message.MessageType.ActivityFinished, "third");
+    var fourth = message(Message.MessageType.ScheduleModified, "fourth");
+    start(2, MessagePipeline.OverflowPolicy.BLOCK, first);
+
+    assertTrue(pipeline.offer(second));
+    assertTrue(pipeline.offer(third));
+    assertEquals(2, pipeline.getQueueDepth());
+
+    var result = new AtomicBoolean();
+    var producer = offerInBackground(fourth, result);
+    assertBlocked(producer);
+
+    processor.release.countDown();
+    producer.join(5000);
+    assertFalse(producer.isAlive());
+    assertTrue(result.get());
+    assertEquals(List.of(first, second, third, fourth), drain());
+    assertEquals(0, pipeline.getDroppedCount());
+  }
+
+  @Test
+  void dropOldestOnlyDropsCoalescableTypes() throws InterruptedException {
+    var first = message(Message.MessageType.ActivityStarted, "first");
+    var started = message(Message.MessageType.ActivityStarted, "started");
+    var schedule = message(Message.MessageType.ScheduleModified, "schedule");
+    var finished = message(Message.MessageType.ActivityFinished, "finished");
+    var newSchedule = message(Message.MessageType.ScheduleModified, "newSchedule");
+    start(3, MessagePipeline.OverflowPolicy.DROP_OLDEST, first);
+
+    assertTrue(pipeline.offer(started));
+    assertTrue(pipeline.offer(schedule));
+    assertTrue(pipeline.offer(finished));
+
+    // the schedule is dropped although the activity message before it is older
+    assertTrue(pipeline.offer(newSchedule));
+    assertEquals(1, pipeline.getDroppedCount());
+    assertEquals(List.of(first, started, finished, newSchedule), drain());
+  }
+
+  @Test
+  void dropOldestKeepsTheLatestOfEachType() throws InterruptedException {
+    var first = message(Message.MessageType.ActivityStarted, "first");
+    var started = message(Message.MessageType.ActivityStarted, "started");
+    var schedule = message(Message.MessageType.ScheduleModified, "schedule");
+    var finished = message(Message.MessageType.ActivityFinished, "finished");
+    var next = message(Message.MessageType.ActivityStarted, "next");
+    start(3, MessagePipeline.OverflowPolicy.DROP_OLDEST, first);
+
+    assertTrue(pipeline.offer(started));
+    assertTrue(pipeline.offer(schedule));
+    assertTrue(pipeline.offer(finished));
+
+    // nothing supersedes the only schedule, so the producer waits instead of losing it
+    var result = new AtomicBoolean();
+    var producer = offerInBackground(next, result);
+    assertBlocked(producer);
+    assertEquals(0, pipeline.getDroppedCount());
+
+    processor.release.countDown();
+    producer.join(5000);
+    assertTrue(result.get());
+    assertEquals(List.of(first, started, schedule, finished, next), drain());
+  }
+
+  @Test
+  void dropOldestBlocksWhenNothingCanBeDropped() throws InterruptedException {
+    var first = message(Message.MessageType.ActivityStarted, "first");
+    var started = message(Message.MessageType.ActivityStarted, "started");
+    var finished = message(Message.MessageType.ActivityFinished, "finished");
+    var committed = message(Message.MessageType.KnowledgeGraphCommitted, "committed");
+    start(2, MessagePipeline.OverflowPolicy.DROP_OLDEST, first);
+
+    assertTrue(pipeline.offer(started));
+    assertTrue(pipeline.offer(finished));
+
+    var result = new AtomicBoolean();
+    var producer = offerInBackground(committed, result);
+    assertBlocked(producer);
+    assertEquals(0, pipeline.getDroppedCount());
+
+    processor.release.countDown();
+    producer.join(5000);
+    assertTrue(result.get());
+    assertEquals(List.of(first, started, finished, committed), drain());
+  }
+
+  @Test
+  void coalesceReplacesQueuedMessageOfSameType() throws InterruptedException {
+    var first = message(Message.MessageType.ActivityStarted, "first");
+    var schedule = message(Message.MessageType.ScheduleModified, "schedule");
+    var finished = message(Message.MessageType.ActivityFinished, "finished");
+    var newSchedule = message(Message.MessageType.ScheduleModified, "newSchedule");
+    start(2, MessagePipeline.OverflowPolicy.COALESCE, first);
+
+    assertTrue(pipeline.offer(schedule));
+    assertTrue(pipeline.offer(finished));
+    assertTrue(pipeline.offer(newSchedule));
+
+    assertEquals(1, pipeline.getCoalescedCount());
+    assertEquals(0, pipeline.getDroppedCount());
+    // the new schedule takes the place of the old one, ahead of the later activity message
+    assertEquals(List.of(first, newSchedule, finished), drain());
+  }
+
+  @Test
+  void coalesceBlocksForLifecycleMessages() throws InterruptedException {
+    var first = message(Message.MessageType.ActivityStarted, "first");
+    var started = message(Message.MessageType.ActivityStarted, "started");
+    var finished = message(Message.MessageType.ActivityFinished, "finished");
+    var next = message(Message.MessageType.ActivityStarted, "next");
+    start(2, MessagePipeline.OverflowPolicy.COALESCE, first);
+
+    assertTrue(pipeline.offer(started));
+    assertTrue(pipeline.offer(finished));
+
+    var result = new AtomicBoolean();
+    var producer = offerInBackground(next, result);
+    assertBlocked(producer);
+    assertEquals(0, pipeline.getCoalescedCount());
+
+    processor.release.countDown();
+    producer.join(5000);
+    assertTrue(result.get());
+    assertEquals(List.of(first, started, finished, next), drain());
+  }
+
+  @Test
+  void shutdownReleasesBlockedProducer() throws InterruptedException {
+    var first = message(Message.MessageType.ActivityStarted, "first");
+    var started = message(Message.MessageType.ActivityStarted, "started");
+    var rejected = message(Message.MessageType.ActivityFinished, "rejected");
+    start(1, MessagePipeline.OverflowPolicy.BLOCK, first);
+
+    assertTrue(pipeline.offer(started));
+
+    var result = new AtomicBoolean(true);
+    var producer = offerInBackground(rejected, result);
+    assertBlocked(producer);
+
+    pipeline.shutdown();
+    producer.join(5000);
+    assertFalse(producer.isAlive());
+    assertFalse(result.get());
+    assertFalse(pipeline.offer(rejected));
+
+    // what was queued before the shutdown is still processed
+    assertEquals(List.of(first, started), drain());
+  }
+
+  @Test
+  void tasksRunOnTheWorkerThreadAheadOfQueuedMessages() throws InterruptedException {
+    var first = message(Message.MessageType.ActivityStarted, "first");
+    var queued = message(Message.MessageType.ActivityFinished, "queued");
+    start(2, MessagePipeline.OverflowPolicy.BLOCK, first);
+    assertTrue(pipeline.offer(queued));
+
+    var worker = new Thread[1];
+    var seenBeforeTask = new ArrayList<Message>();
+    assertTrue(
+        pipeline.execute(
+            () -> {
+              worker[0] = Thread.currentThread();
+              seenBeforeTask.addAll(processor.processed());
+            }));
+
+    assertEquals(List.of(first, queued), drain());
+    assertEquals("test", worker[0].getName());
+    assertEquals(List.of(first), seenBeforeTask);
+  }
+
+  @Test
+  void scheduledTasksWaitForTheirDelayUnlessShutDown() throws InterruptedException {
+    pipeline = new MessagePipeline("test", 1, MessagePipeline.OverflowPolicy.BLOCK, processor);
+    var ran = new CountDownLatch(1);
+    long start = System.nanoTime();
+    var elapsed = new long[1];
+    assertTrue(
+        pipeline.schedule(
+            () -> {
+              elapsed[0] = System.nanoTime() - start;
+              ran.countDown();
+            },
+            50));
+    assertTrue(ran.await(5, TimeUnit.SECONDS));
+    assertTrue(elapsed[0] >= TimeUnit.MILLISECONDS.toNanos(50));
+
+    // a task still pending at shutdown runs before the worker exits
+    var pending = new CountDownLatch(1);
+    assertTrue(pipeline.schedule(pending::countDown, 60_000));
+    pipeline.shutdown();
+    assertTrue(pipeline.awaitTermination(5000));
+    assertEquals(0, pending.getCount());
+    assertFalse(pipeline.execute(() -> {}));
+  }
+}
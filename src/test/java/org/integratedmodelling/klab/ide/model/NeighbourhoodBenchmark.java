@@ -0,0 +1,67 @@
+package org.integratedmodelling.klab.ide.model;
+
+import java.util.EnumSet;
+import java.util.concurrent.TimeUnit;
+import org.integratedmodelling.klab.api.digitaltwin.GraphModel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Neighbourhood extraction from the context of synthetic knowledge graphs of 10k to 1M assets: a
+ * {@link GraphModel.Relationship#HAS_CHILD} tree with ten children per asset, where every asset
+ * also has a relationship of another type to a random asset. {@link #defaultView()} extracts what
+ * the knowledge graph views show, with the default relationships and {@link
+ * Neighbourhood#MAX_ASSETS}; {@link #allRelationshipsUnbounded()} follows every relationship
+ * without a budget. Assets are proxies, so hashing them costs a little more than in the IDE. Run
+ * like {@link org.integratedmodelling.klab.ide.events.EventBusBenchmark}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class NeighbourhoodBenchmark {
+
+  @Param({"10000", "100000", "1000000"})
+  public int assets;
+
+  @Param({"3", "5"})
+  public int depth;
+
+  private SyntheticGraph synthetic;
+
+  @Setup
+  public void setup() {
+    synthetic = SyntheticGraph.tree(assets, 10, 42);
+  }
+
+  @Benchmark
+  public Neighbourhood defaultView() {
+    return Neighbourhood.extract(
+        synthetic.graph(),
+        synthetic.context(),
+        depth,
+        Neighbourhood.DEFAULT_RELATIONSHIPS,
+        Neighbourhood.MAX_ASSETS);
+  }
+
+  @Benchmark
+  public Neighbourhood allRelationshipsUnbounded() {
+    return Neighbourhood.extract(
+        synthetic.graph(),
+        synthetic.context(),
+        depth,
+        EnumSet.allOf(GraphModel.Relationship.class),
+        Integer.MAX_VALUE);
+  }
+}
@@ -0,0 +1,132 @@
+package org.integratedmodelling.klab.ide.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.EnumSet;
+import java.util.Set;
+import org.integratedmodelling.klab.api.digitaltwin.GraphModel;
+import org.junit.jupiter.api.Test;
+
+class NeighbourhoodTest {
+
+  private static final GraphModel.Relationship HAS_CHILD = GraphModel.Relationship.HAS_CHILD;
+  private static final GraphModel.Relationship OTHER = SyntheticGraph.OTHER_RELATIONSHIPS[0];
+
+  @Test
+  void followsOnlyTheSelectedRelationships() {
+    var synthetic = SyntheticGraph.create();
+    var child = synthetic.add(1);
+    var other = synthetic.add(2);
+    var childOfOther = synthetic.add(3);
+    synthetic.link(synthetic.context(), child, HAS_CHILD);
+    synthetic.link(synthetic.context(), other, OTHER);
+    synthetic.link(other, childOfOther, HAS_CHILD);
+
+    var children =
+        Neighbourhood.extract(synthetic.graph(), synthetic.context(), 3, Set.of(HAS_CHILD), 100);
+    assertEquals(2, children.size());
+    assertTrue(children.contains(1));
+    assertFalse(children.contains(2));
+    assertFalse(children.contains(3));
+    assertEquals(1, children.getLinks().size());
+
+    var both =
+        Neighbourhood.extract(
+            synthetic.graph(), synthetic.context(), 3, EnumSet.of(HAS_CHILD, OTHER), 100);
+    assertEquals(4, both.size());
+    assertEquals(2, both.getLevel(3));
+    assertEquals(3, both.getLinks().size());
+    for (var link : both.getLinks()) {
+      assertTrue(link.relationship().relationship == HAS_CHILD || link.target().getId() == 2);
+    }
+  }
+
+  @Test
+  void everyAssetIsVisitedOnceAtItsShortestDistance() {
+    var synthetic = SyntheticGraph.create();
+    var a = synthetic.add(1);
+    var b = synthetic.add(2);
+    var c = synthetic.add(3);
+    var d = synthetic.add(4);
+    synthetic.link(synthetic.context(), a, HAS_CHILD);
+    synthetic.link(synthetic.context(), b, HAS_CHILD);
+    synthetic.link(a, c, HAS_CHILD);
+    synthetic.link(b, c, HAS_CHILD);
+    synthetic.link(c, d, HAS_CHILD);
+    // a cycle back to the focus
+    synthetic.link(d, synthetic.context(), HAS_CHILD);
+
+    var neighbourhood =
+        Neighbourhood.extract(synthetic.graph(), synthetic.context(), 5, Set.of(HAS_CHILD), 100);
+    assertEquals(5, neighbourhood.size());
+    assertEquals(0, neighbourhood.getLevel(0));
+    assertEquals(1, neighbourhood.getLevel(2));
+    assertEquals(2, neighbourhood.getLevel(3));
+    assertEquals(3, neighbourhood.getLevel(4));
+    // every relationship between assets in the neighbourhood is kept, once
+    assertEquals(6, neighbourhood.getLinks().size());
+    assertEquals(0, neighbourhood.getAssets().iterator().next().getId());
+  }
+
+  @Test
+  void depthLimitsTheDistance() {
+    var synthetic = SyntheticGraph.tree(1000, 2, 1);
+    var neighbourhood =
+        Neighbourhood.extract(synthetic.graph(), synthetic.context(), 3, Set.of(HAS_CHILD), 1000);
+    // 1 + 2 + 4 + 8
+    assertEquals(15, neighbourhood.size());
+    assertFalse(neighbourhood.isTruncated());
+    for (var asset : neighbourhood.getAssets()) {
+      assertTrue(neighbourhood.getLevel(asset.getId()) <= 3);
+    }
+    assertEquals(-1, neighbourhood.getLevel(999));
+  }
+
+  @Test
+  void budgetStopsTheExtraction() {
+    var synthetic = SyntheticGraph.tree(Neighbourhood.MAX_ASSETS + 10, Integer.MAX_VALUE, 1);
+    var neighbourhood =
+        Neighbourhood.extract(
+            synthetic.graph(),
+            synthetic.context(),
+            Neighbourhood.DEFAULT_DEPTH,
+            Neighbourhood.DEFAULT_RELATIONSHIPS,
+            Neighbourhood.MAX_ASSETS);
+    assertEquals(Neighbourhood.MAX_ASSETS, neighbourhood.size());
+    assertTrue(neighbourhood.isTruncated());
+    for (var link : neighbourhood.getLinks()) {
+      assertTrue(neighbourhood.contains(link.source().getId()));
+      assertTrue(neighbourhood.contains(link.target().getId()));
+    }
+  }
+
+  @Test
+  void budgetIsNotExceededOnDeepViews() {
+    var synthetic = SyntheticGraph.tree(100_000, 10, 1);
+    var neighbourhood =
+        Neighbourhood.extract(
+            synthetic.graph(),
+            synthetic.context(),
+            5,
+            EnumSet.allOf(GraphModel.Relationship.class),
+            Neighbourhood.MAX_ASSETS);
+    assertEquals(Neighbourhood.MAX_ASSETS, neighbourhood.size());
+    assertTrue(neighbourhood.isTruncated());
+  }
+
+  @Test
+  void fullNeighbourhoodIsNotTruncated() {
+    var synthetic = SyntheticGraph.tree(Neighbourhood.MAX_ASSETS, Integer.MAX_VALUE, 1);
+    var neighbourhood =
+        Neighbourhood.extract(
+            synthetic.graph(),
+            synthetic.context(),
+            1,
+            Set.of(HAS_CHILD),
+            Neighbourhood.MAX_ASSETS);
+    assertEquals(Neighbourhood.MAX_ASSETS, neighbourhood.size());
+    assertFalse(neighbourhood.isTruncated());
+  }
+}
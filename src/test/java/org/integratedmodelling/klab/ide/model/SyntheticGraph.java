@@ -0,0 +1,82 @@
+package org.integratedmodelling.klab.ide.model;
+
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Random;
+import org.integratedmodelling.common.services.client.digitaltwin.ClientKnowledgeGraph;
+import org.integratedmodelling.klab.api.data.RuntimeAsset;
+import org.integratedmodelling.klab.api.digitaltwin.GraphModel;
+import org.jgrapht.Graph;
+import org.jgrapht.graph.DirectedPseudograph;
+
+/**
+ * Knowledge graph of placeholder assets for the {@link Neighbourhood} test and benchmark. Assets
+ * only answer {@link RuntimeAsset#getId()}; the context is the asset with id 0.
+ */
+record SyntheticGraph(
+    Graph<RuntimeAsset, ClientKnowledgeGraph.Relationship> graph, RuntimeAsset context) {
+
+  /** Relationships other than {@link GraphModel.Relationship#HAS_CHILD}. */
+  static final GraphModel.Relationship[] OTHER_RELATIONSHIPS =
+      Arrays.stream(GraphModel.Relationship.values())
+          .filter(relationship -> relationship != GraphModel.Relationship.HAS_CHILD)
+          .toArray(GraphModel.Relationship[]::new);
+
+  static SyntheticGraph create() {
+    var graph =
+        new DirectedPseudograph<RuntimeAsset, ClientKnowledgeGraph.Relationship>(null, null, false);
+    var context = asset(0);
+    graph.addVertex(context);
+    return new SyntheticGraph(graph, context);
+  }
+
+  /**
+   * A {@link GraphModel.Relationship#HAS_CHILD} tree of the passed size under the context, where
+   * every asset has {@code branching} children until the size is reached, and each asset also has
+   * an edge of another, random relationship to a random asset.
+   */
+  static SyntheticGraph tree(int size, int branching, long seed) {
+    var ret = create();
+    var random = new Random(seed);
+    var assets = new RuntimeAsset[size];
+    assets[0] = ret.context;
+    for (int i = 1; i < size; i++) {
+      assets[i] = ret.add(i);
+      ret.link(assets[(i - 1) / branching], assets[i], GraphModel.Relationship.HAS_CHILD);
+    }
+    for (int i = 0; i < size; i++) {
+      ret.link(
+          assets[i],
+          assets[random.nextInt(size)],
+          OTHER_RELATIONSHIPS[random.nextInt(OTHER_RELATIONSHIPS.length)]);
+    }
+    return ret;
+  }
+
+  static RuntimeAsset asset(long id) {
+    return (RuntimeAsset)
+        Proxy.newProxyInstance(
+            RuntimeAsset.class.getClassLoader(),
+            new Class<?>[] {RuntimeAsset.class},
+            (proxy, method, args) ->
+                switch (method.getName()) {
+                  case "getId" -> id;
+                  case "toString" -> "asset " + id;
+                  case "hashCode" -> Long.hashCode(id);
+                  case "equals" -> proxy == args[0];
+                  default -> null;
+                });
+  }
+
+  RuntimeAsset add(long id) {
+    var ret = asset(id);
+    graph.addVertex(ret);
+    return ret;
+  }
+
+  void link(RuntimeAsset source, RuntimeAsset target, GraphModel.Relationship type) {
+    var edge = new ClientKnowledgeGraph.Relationship();
+    edge.relationship = type;
+    graph.addEdge(source, target, edge);
+  }
+}